@@ -1,11 +1,9 @@
 package ticTacToe;
 
 
-import java.util.List;
-import java.util.Random;
 /**
  * An agrgessive policy: if there is a winning move given a game state (Game object) then this policy finds it. Otherwise returns a
- * random available move.
+ * random available move. If there are several winning moves, the one in the lowest numbered cell is played.
  *  
  * @author ae187
  *
@@ -15,29 +13,34 @@ public class AggressivePolicy extends Policy {
 	
 	public Move getMove(Game g) {
 		
+		char me=g.whoseTurn.getName();
+		long myBits=(me=='X')?g.xBits:g.oBits;
 		
-		List<Move> moves=g.getPossibleMoves();
+		long winning=winningCells(g, me, myBits);
+		if (winning!=0)
+			return g.moveAt(me, Long.numberOfTrailingZeros(winning));
 		
-		for(Move m:moves)
-		{
-			
-			Game resulting=null;
-			try{
-				resulting=g.simulateMove(m);
-			}
-			catch(IllegalMoveException e)
-			{
-				System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
-			if (resulting.getState()==Game.X_WON||resulting.getState()==Game.O_WON)
-				return m;
-		}
+		return g.moveAt(me, OpponentTables.randomCell(g.emptyCells()));
 		
-		Random r=new Random();
-		
-		return moves.get(r.nextInt(moves.size()));
+	}
+	
+	/**
+	 * @return the empty cells in which {@code who}, who has the pieces {@code bits}, would complete a line
+	 */
+	static long winningCells(Game g, char who, long bits)
+	{
+		//looked up on the 3x3 board, worked out on others
+		if (g.shape.isClassic())
+			return OpponentTables.winning(who, g.boardCode);
 		
+		long winning=0;
+		for(long empty=g.emptyCells();empty!=0;empty&=empty-1)
+		{
+			int cell=Long.numberOfTrailingZeros(empty);
+			if (g.completesLine(bits, cell))
+				winning|=1L<<cell;
+		}
+		return winning;
 	}
 
 }
@@ -0,0 +1,292 @@
+package ticTacToe;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Solves the Tic Tac Toe MDP for many configurations (discount factor and rewards) at once. All configurations share
+ * one {@link TransitionGraph}, so states and transitions are only worked out once, and the values are kept as one
+ * states x configurations matrix: each transition is read once per pass and applied to every configuration.
+ *
+ * Each configuration is solved exactly by a single retrograde pass (see {@link RetrogradeAgent}), and its policy is
+ * the same as a {@link RetrogradeAgent} with the same parameters would have.
+ *
+ */
+public class BatchSolver {
+
+	/**
+	 * The parameters of one MDP: the discount factor and the rewards of {@link TTTMDP}
+	 */
+	public static class Configuration
+	{
+		public final double discount;
+		public final double winReward;
+		public final double loseReward;
+		public final double livingReward;
+		public final double drawReward;
+
+		public Configuration(double discount, double winReward, double loseReward, double livingReward, double drawReward)
+		{
+			this.discount=discount;
+			this.winReward=winReward;
+			this.loseReward=loseReward;
+			this.livingReward=livingReward;
+			this.drawReward=drawReward;
+		}
+
+		/**
+		 * A configuration with the rewards of {@code mdp}
+		 * @param discount
+		 * @param mdp
+		 */
+		public Configuration(double discount, TTTMDP mdp)
+		{
+			this(discount, mdp.winReward, mdp.loseReward, mdp.livingReward, mdp.drawReward);
+		}
+
+		public String toString()
+		{
+			return "discount="+discount+" win="+winReward+" lose="+loseReward+" living="+livingReward+" draw="+drawReward;
+		}
+	}
+
+	final List<Configuration> configurations;
+
+	final TransitionGraph graph;
+
+	/**
+	 * the number of configurations, i.e. the width of the matrices
+	 */
+	final int width;
+
+	/**
+	 * values[s*width+c] is the value of state s in configuration c
+	 */
+	final double[] values;
+
+	/**
+	 * actions[s*width+c] is the best action of state s in configuration c, -1 in terminal states
+	 */
+	final int[] actions;
+
+	/**
+	 * the discount of each configuration, and rewards[kind*width+c] the reward of a transition of that kind (see
+	 * {@link TransitionGraph#WIN} etc.) in configuration c
+	 */
+	private final double[] discounts;
+	private final double[] rewards;
+
+	/**
+	 * does the backups, see {@link BellmanKernel#select()}
+	 */
+	final BellmanKernel kernel;
+
+	private boolean solved=false;
+
+	public BatchSolver(List<Configuration> configurations)
+	{
+		this(configurations, false);
+	}
+
+	/**
+	 * @param configurations
+	 * @param canonical if true, only canonical games (see {@link Game#canonical()}) are solved, and the policies look
+	 * other games up through their canonical form.
+	 */
+	public BatchSolver(List<Configuration> configurations, boolean canonical)
+	{
+		this(configurations, OpponentModel.RANDOM, canonical);
+	}
+
+	/**
+	 * Use this constructor to solve all the configurations against an opponent that replies as {@code opponent} says.
+	 * @param configurations
+	 * @param opponent
+	 */
+	public BatchSolver(List<Configuration> configurations, OpponentModel opponent)
+	{
+		this(configurations, opponent, false);
+	}
+
+	private BatchSolver(List<Configuration> configurations, OpponentModel opponent, boolean canonical)
+	{
+		if (configurations.isEmpty())
+			throw new IllegalArgumentException("There should be at least one configuration");
+
+		this.configurations=new ArrayList<Configuration>(configurations);
+		this.graph=TransitionGraph.of(opponent, canonical);
+		this.kernel=BellmanKernel.select();
+		this.width=configurations.size();
+		this.values=new double[graph.size()*width];
+		this.actions=new int[graph.size()*width];
+
+		discounts=new double[width];
+		rewards=new double[4*width];
+		for (int c=0; c<width; c++)
+		{
+			Configuration conf=configurations.get(c);
+			discounts[c]=conf.discount;
+			rewards[TransitionGraph.WIN*width+c]=conf.winReward;
+			rewards[TransitionGraph.LOSE*width+c]=conf.loseReward;
+			rewards[TransitionGraph.LIVE*width+c]=conf.livingReward;
+			rewards[TransitionGraph.DRAW*width+c]=conf.drawReward;
+		}
+	}
+
+	/**
+	 * Solves all configurations in the calling thread.
+	 * @return the policy of each configuration, in the order they were given
+	 */
+	public List<Policy> solve()
+	{
+		return solve(1);
+	}
+
+	/**
+	 * Solves all configurations, split between {@code parallelism} threads. The results don't depend on the number
+	 * of threads.
+	 * @param parallelism
+	 * @return the policy of each configuration, in the order they were given
+	 */
+	public List<Policy> solve(int parallelism)
+	{
+		if (parallelism<1)
+			throw new IllegalArgumentException("parallelism should be at least 1");
+
+		if (!solved)
+		{
+			int chunks=Math.min(parallelism, width);
+			if (chunks==1)
+				retrograde(0, width);
+			else
+			{
+				List<Callable<Void>> tasks=new ArrayList<Callable<Void>>();
+				for (int i=0; i<chunks; i++)
+				{
+					final int from=i*width/chunks;
+					final int to=(i+1)*width/chunks;
+					tasks.add(new Callable<Void>() {
+						public Void call() {
+							retrograde(from, to);
+							return null;
+						}
+					});
+				}
+
+				ForkJoinPool pool=new ForkJoinPool(chunks);
+				try
+				{
+					pool.invokeAll(tasks);
+				}
+				finally
+				{
+					pool.shutdown();
+				}
+			}
+			solved=true;
+		}
+
+		return policies();
+	}
+
+	/**
+	 * One backward pass over the states (see {@link DenseValueIteration#retrograde()}) for configurations
+	 * {@code from} to {@code to}-1.
+	 */
+	private void retrograde(int from, int to)
+	{
+		double[] q=new double[width];
+		double[] best=new double[width];
+
+		for (int s=graph.size()-1; s>=0; s--)
+		{
+			int row=s*width;
+			if (graph.terminal[s])
+			{
+				for (int c=from; c<to; c++)
+				{
+					values[row+c]=0;
+					actions[row+c]=-1;
+				}
+				continue;
+			}
+
+			for (int c=from; c<to; c++)
+				best[c]=Double.NEGATIVE_INFINITY;
+
+			for (int a=graph.actionStart[s]; a<graph.actionStart[s+1]; a++)
+			{
+				kernel.qValues(graph, rewards, discounts, a, values, width, from, to, q);
+
+				for (int c=from; c<to; c++)
+					if (q[c]>best[c])
+					{
+						best[c]=q[c];
+						actions[row+c]=a;
+					}
+			}
+
+			for (int c=from; c<to; c++)
+				values[row+c]=best[c];
+		}
+	}
+
+	private List<Policy> policies()
+	{
+		//the games are shared by all the policies
+		Game[] games=new Game[graph.size()];
+		for (int s=0; s<games.length; s++)
+			if (!graph.terminal[s])
+				games[s]=graph.game(s);
+
+		List<Policy> result=new ArrayList<Policy>();
+		for (int c=0; c<width; c++)
+		{
+			HashMap<Game, Move> policy=new HashMap<Game, Move>();
+			for (int s=0; s<games.length; s++)
+				if (games[s]!=null)
+					policy.put(games[s], graph.move(actions[s*width+c]));
+			result.add(new Policy(policy, graph.canonical, true));
+		}
+		return result;
+	}
+
+	/**
+	 * @param configuration the index of a configuration
+	 * @param g
+	 * @return the value of game {@code g} in that configuration, once solved
+	 */
+	public double getValue(int configuration, Game g)
+	{
+		if (!solved)
+			throw new IllegalStateException("Not solved yet");
+
+		int s=graph.indexOf(g);
+		if (s<0)
+			throw new IllegalArgumentException("Not a state of the MDP: "+g);
+
+		return values[s*width+configuration];
+	}
+
+	/**
+	 * @return the name of the Bellman kernel doing the backups (see {@link BellmanKernel#select()}), which tells
+	 * whether the Vector API one could be loaded
+	 */
+	public String getKernel()
+	{
+		return kernel.name();
+	}
+
+	/**
+	 * @return the configurations, in the order they were given
+	 */
+	public List<Configuration> getConfigurations()
+	{
+		return configurations;
+	}
+
+}
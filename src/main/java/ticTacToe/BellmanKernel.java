@@ -0,0 +1,216 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The inner loop of a Bellman backup over a {@link TransitionGraph}: the sum over the transitions of an action of
+ * prob * (reward + discount * V[next]). The array based solvers ({@link DenseSolver}, {@link BatchSolver}) do all
+ * their backups through a kernel, chosen when they are created from the system property {@value #PROPERTY}:
+ * <ul>
+ * <li>{@code blocked} (the default) keeps four independent partial sums over an action's transitions, added up at
+ * the end, and over a matrix of several configurations handles the configurations as lanes, in contiguous inner
+ * loops the JIT can vectorize.</li>
+ * <li>{@code vector} does the same with the incubating Vector API, see {@code VectorKernel}. It needs JDK 16+ and
+ * {@code --add-modules jdk.incubator.vector}; without them {@link #SCALAR} is used instead.</li>
+ * <li>{@code scalar} does one transition, and one configuration, at a time.</li>
+ * </ul>
+ * Over configurations, all kernels do the same operations in the same order, so they give bit-identical values. For
+ * a single action, the blocked and vector kernels add the terms in a different order, so values can differ in the
+ * last bits; {@link DenseValueIteration#bestAction} breaks near ties towards the first action, so that the policies
+ * don't.
+ *
+ * {@link #main} times the kernels against each other.
+ */
+abstract class BellmanKernel {
+
+	/**
+	 * the system property naming the kernel to use
+	 */
+	static final String PROPERTY = "ticTacToe.kernel";
+
+	static final BellmanKernel SCALAR = new Scalar();
+	static final BellmanKernel BLOCKED = new Blocked();
+
+	/**
+	 * @return the kernel named by the system property {@value #PROPERTY}
+	 */
+	static BellmanKernel select() {
+		String name = System.getProperty(PROPERTY, "blocked");
+		if (name.equals("blocked"))
+			return BLOCKED;
+		if (name.equals("scalar"))
+			return SCALAR;
+		if (name.equals("vector"))
+			return VectorHolder.INSTANCE;
+		throw new IllegalArgumentException("Unknown Bellman kernel " + name + ", should be blocked, vector or scalar");
+	}
+
+	private static class VectorHolder {
+		static final BellmanKernel INSTANCE = loadVector();
+	}
+
+	/**
+	 * @return the Vector API kernel, or {@link #SCALAR} if it wasn't compiled in, or the JVM doesn't have the module
+	 */
+	private static BellmanKernel loadVector() {
+		try {
+			return (BellmanKernel) Class.forName("ticTacToe.VectorKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return SCALAR;
+		} catch (LinkageError e) {
+			// class files for a newer JVM, or the jdk.incubator.vector module isn't there
+			return SCALAR;
+		}
+	}
+
+	/**
+	 * @param reward the reward of every transition, see {@link CompiledMDP#reward}
+	 * @return the Q-value of action {@code a} given the values {@code v} of all states
+	 */
+	abstract double qValue(TransitionGraph g, double[] reward, int a, double[] v, double discount);
+
+	/**
+	 * Computes the Q-values of action {@code a} for configurations {@code from} to {@code to}-1 of a states x
+	 * configurations matrix, see {@link BatchSolver}.
+	 *
+	 * @param rewards   rewards[kind*width+c] is the reward of a transition of that kind in configuration c
+	 * @param discounts the discount of each configuration
+	 * @param v         v[s*width+c] is the value of state s in configuration c
+	 * @param q         where to put the Q-value of each configuration
+	 */
+	abstract void qValues(TransitionGraph g, double[] rewards, double[] discounts, int a, double[] v, int width,
+			int from, int to, double[] q);
+
+	abstract String name();
+
+	public String toString() {
+		return name();
+	}
+
+	private static final class Scalar extends BellmanKernel {
+
+		double qValue(TransitionGraph g, double[] reward, int a, double[] v, double discount) {
+			double q = 0;
+			for (int t = g.transStart[a]; t < g.transStart[a + 1]; t++)
+				q += g.prob[t] * (reward[t] + discount * v[g.next[t]]);
+			return q;
+		}
+
+		void qValues(TransitionGraph g, double[] rewards, double[] discounts, int a, double[] v, int width, int from,
+				int to, double[] q) {
+			for (int c = from; c < to; c++) {
+				double sum = 0;
+				for (int t = g.transStart[a]; t < g.transStart[a + 1]; t++)
+					sum += g.prob[t] * (rewards[g.kind[t] * width + c] + discounts[c] * v[g.next[t] * width + c]);
+				q[c] = sum;
+			}
+		}
+
+		String name() {
+			return "scalar";
+		}
+
+	}
+
+	private static final class Blocked extends BellmanKernel {
+
+		double qValue(TransitionGraph g, double[] reward, int a, double[] v, double discount) {
+			int[] next = g.next;
+			double[] prob = g.prob;
+			int t = g.transStart[a];
+			int end = g.transStart[a + 1];
+
+			// four independent sums, so that the additions don't wait on each other
+			double q0 = 0, q1 = 0, q2 = 0, q3 = 0;
+			for (; t + 4 <= end; t += 4) {
+				q0 += prob[t] * (reward[t] + discount * v[next[t]]);
+				q1 += prob[t + 1] * (reward[t + 1] + discount * v[next[t + 1]]);
+				q2 += prob[t + 2] * (reward[t + 2] + discount * v[next[t + 2]]);
+				q3 += prob[t + 3] * (reward[t + 3] + discount * v[next[t + 3]]);
+			}
+			double q = (q0 + q1) + (q2 + q3);
+			for (; t < end; t++)
+				q += prob[t] * (reward[t] + discount * v[next[t]]);
+			return q;
+		}
+
+		void qValues(TransitionGraph g, double[] rewards, double[] discounts, int a, double[] v, int width, int from,
+				int to, double[] q) {
+			for (int c = from; c < to; c++)
+				q[c] = 0;
+
+			for (int t = g.transStart[a]; t < g.transStart[a + 1]; t++) {
+				double p = g.prob[t];
+				int rewardRow = g.kind[t] * width;
+				int nextRow = g.next[t] * width;
+				for (int c = from; c < to; c++)
+					q[c] += p * (rewards[rewardRow + c] + discounts[c] * v[nextRow + c]);
+			}
+		}
+
+		String name() {
+			return "blocked";
+		}
+
+	}
+
+	/**
+	 * where {@link #main} puts its results, so that the JIT can't drop the work
+	 */
+	static volatile double sink;
+
+	/**
+	 * Times full sweeps of Q-values with each kernel, over one configuration and over a batch of 64. The vector kernel
+	 * is only timed if it loads; run with {@code --add-modules jdk.incubator.vector} for it.
+	 */
+	public static void main(String[] args) {
+		TransitionGraph graph = TransitionGraph.get(false);
+		CompiledMDP mdp = new TTTMDP().compile(false);
+		int n = graph.size();
+		int width = 64;
+		Random random = new Random(1);
+		double[] v = new double[n];
+		for (int s = 0; s < n; s++)
+			v[s] = random.nextDouble();
+		double[] batch = new double[n * width];
+		for (int i = 0; i < batch.length; i++)
+			batch[i] = random.nextDouble();
+		double[] rewards = new double[4 * width];
+		for (int i = 0; i < rewards.length; i++)
+			rewards[i] = random.nextDouble();
+		double[] discounts = new double[width];
+		for (int c = 0; c < width; c++)
+			discounts[c] = 0.9;
+		double[] q = new double[width];
+
+		List<BellmanKernel> kernels = new ArrayList<BellmanKernel>();
+		kernels.add(SCALAR);
+		kernels.add(BLOCKED);
+		if (VectorHolder.INSTANCE != SCALAR)
+			kernels.add(VectorHolder.INSTANCE);
+
+		int actions = graph.actionStart[n];
+		for (int round = 0; round < 5; round++)
+			for (BellmanKernel kernel : kernels) {
+				long start = System.nanoTime();
+				for (int sweep = 0; sweep < 200; sweep++)
+					for (int a = 0; a < actions; a++)
+						sink += kernel.qValue(graph, mdp.reward, a, v, 0.9);
+				long single = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int sweep = 0; sweep < 20; sweep++)
+					for (int a = 0; a < actions; a++) {
+						kernel.qValues(graph, rewards, discounts, a, batch, width, 0, width, q);
+						sink += q[0];
+					}
+				long batched = System.nanoTime() - start;
+
+				System.out.printf("round %d %-8s single: %6.1f ns/action  batch of %d: %7.1f ns/action%n", round, kernel,
+						(double) single / (200 * actions), width, (double) batched / (20 * actions));
+			}
+	}
+
+}
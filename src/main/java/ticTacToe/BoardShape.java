@@ -0,0 +1,129 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The geometry of an m,n,k board: {@code rows} x {@code cols} cells, won by getting {@code k} in a row horizontally,
+ * vertically or diagonally. Ordinary Tic Tac Toe is the 3,3,3 board, {@link #CLASSIC}.
+ *
+ * Cells are numbered row by row, cell (i,j) being i*cols+j, and sets of cells are kept as bits of a long, so a board
+ * can have at most 64 cells (and at most {@link Move#MAX_DIM} rows and columns). Shapes are immutable and shared: use
+ * {@link #of}.
+ */
+final class BoardShape {
+
+	static final BoardShape CLASSIC = new BoardShape(3, 3, 3);
+
+	private static final ConcurrentHashMap<Integer, BoardShape> SHAPES = new ConcurrentHashMap<Integer, BoardShape>();
+
+	final int rows;
+	final int cols;
+	final int k;
+	final int cells;
+
+	/**
+	 * all cells set
+	 */
+	final long full;
+
+	/**
+	 * Every possible winning line as a set of cells: horizontal ones first, then vertical, then the two diagonal
+	 * directions. For the classic board this is the same order as {@link Game#LINES}.
+	 */
+	final long[] lines;
+
+	/**
+	 * linesThrough[cell] holds the lines of {@link #lines} that go through {@code cell}, so that after a move only
+	 * these need checking.
+	 */
+	final long[][] linesThrough;
+
+	private BoardShape(int rows, int cols, int k) {
+		this.rows = rows;
+		this.cols = cols;
+		this.k = k;
+		this.cells = rows * cols;
+		this.full = cells == 64 ? -1L : (1L << cells) - 1;
+
+		// directions as (row step, column step): horizontal, vertical, diagonal, anti-diagonal
+		int[][] directions = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		List<Long> all = new ArrayList<Long>();
+		for (int[] d : directions)
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < cols; j++) {
+					int lastI = i + (k - 1) * d[0];
+					int lastJ = j + (k - 1) * d[1];
+					if (lastI >= rows || lastJ < 0 || lastJ >= cols)
+						continue;
+
+					long line = 0;
+					for (int s = 0; s < k; s++)
+						line |= 1L << ((i + s * d[0]) * cols + j + s * d[1]);
+					all.add(line);
+				}
+
+		lines = new long[all.size()];
+		for (int l = 0; l < lines.length; l++)
+			lines[l] = all.get(l);
+
+		linesThrough = new long[cells][];
+		for (int cell = 0; cell < cells; cell++) {
+			List<Long> through = new ArrayList<Long>();
+			for (long line : lines)
+				if ((line & (1L << cell)) != 0)
+					through.add(line);
+
+			linesThrough[cell] = new long[through.size()];
+			for (int l = 0; l < through.size(); l++)
+				linesThrough[cell][l] = through.get(l);
+		}
+	}
+
+	/**
+	 * @return the (shared) shape of a {@code rows} x {@code cols} board won with {@code k} in a row
+	 */
+	static BoardShape of(int rows, int cols, int k) {
+		if (rows < 1 || cols < 1 || rows > Move.MAX_DIM || cols > Move.MAX_DIM)
+			throw new IllegalArgumentException(
+					"Boards can have between 1 and " + Move.MAX_DIM + " rows and columns, not " + rows + "x" + cols);
+		if (k < 1 || k > Math.max(rows, cols))
+			throw new IllegalArgumentException("Can't get " + k + " in a row on a " + rows + "x" + cols + " board");
+
+		if (rows == 3 && cols == 3 && k == 3)
+			return CLASSIC;
+
+		Integer key = (rows * (Move.MAX_DIM + 1) + cols) * (Move.MAX_DIM + 1) + k;
+		BoardShape shape = SHAPES.get(key);
+		if (shape == null) {
+			SHAPES.putIfAbsent(key, new BoardShape(rows, cols, k));
+			shape = SHAPES.get(key);
+		}
+		return shape;
+	}
+
+	/**
+	 * @return true for the ordinary 3x3 Tic Tac Toe board
+	 */
+	boolean isClassic() {
+		return this == CLASSIC;
+	}
+
+	/**
+	 * @param bits a set of cells
+	 * @param cell a cell in {@code bits}
+	 * @return true if {@code bits} has a complete line through {@code cell}
+	 */
+	boolean hasLineThrough(long bits, int cell) {
+		for (long line : linesThrough[cell])
+			if ((bits & line) == line)
+				return true;
+		return false;
+	}
+
+	public String toString() {
+		return rows + "," + cols + "," + k;
+	}
+
+}
@@ -0,0 +1,51 @@
+package ticTacToe;
+
+/**
+ * A {@link TTTMDP} compiled into flat primitive arrays, for solvers that sweep over the whole state space many times.
+ * It is the shared {@link TransitionGraph} together with the reward of every transition under one particular reward
+ * configuration. Get one from {@link TTTMDP#compile()}.
+ *
+ * Instances are immutable and can be shared between threads. The arrays are exposed (package-private) for speed and
+ * must not be written to.
+ */
+final class CompiledMDP {
+
+	final TransitionGraph graph;
+
+	final double winReward;
+	final double loseReward;
+	final double livingReward;
+	final double drawReward;
+
+	/**
+	 * the reward of each transition, indexed like {@link TransitionGraph#next}
+	 */
+	final double[] reward;
+
+	CompiledMDP(TransitionGraph graph, double winReward, double loseReward, double livingReward, double drawReward) {
+		this.graph = graph;
+		this.winReward = winReward;
+		this.loseReward = loseReward;
+		this.livingReward = livingReward;
+		this.drawReward = drawReward;
+
+		double[] byKind = new double[4];
+		byKind[TransitionGraph.WIN] = winReward;
+		byKind[TransitionGraph.LOSE] = loseReward;
+		byKind[TransitionGraph.LIVE] = livingReward;
+		byKind[TransitionGraph.DRAW] = drawReward;
+
+		reward = new double[graph.kind.length];
+		for (int t = 0; t < reward.length; t++)
+			reward[t] = byKind[graph.kind[t]];
+	}
+
+	/**
+	 * @return true if this was compiled from an MDP with these rewards
+	 */
+	boolean hasRewards(double winReward, double loseReward, double livingReward, double drawReward) {
+		return this.winReward == winReward && this.loseReward == loseReward && this.livingReward == livingReward
+				&& this.drawReward == drawReward;
+	}
+
+}
@@ -0,0 +1,247 @@
+package ticTacToe;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * (Modified) policy iteration over a {@link CompiledMDP}, on arrays like {@link DenseValueIteration}: the policy is
+ * the action index each state plays, and the values under it a double[].
+ *
+ * Policy evaluation does sweeps that each compute all values from the previous sweep's values, until the largest change
+ * is at most delta, but no more than a given number of sweeps per round. With a small cap this is modified policy
+ * iteration: the policy is improved before its values have converged. Values carry over from one round to the next,
+ * so later evaluations start close to their answer. Improvement only switches a state to another action if that is
+ * strictly better than the current one, so the policy cannot cycle between equally good actions.
+ *
+ * Work is only done where something may have changed. A state's value under the policy can only change if its action
+ * or the value of one of its successors changed, and its best action only if a successor's value changed, so the
+ * solver keeps two work lists: states to evaluate, and states to improve. Whenever a value changes, the state's
+ * predecessors (see {@link TransitionGraph#pred}) go on both; whenever an action changes, the state goes on the
+ * first. Skipped states would have come out exactly the same, so the results are those of full sweeps.
+ *
+ * Given a {@link ForkJoinPool}, the new values of an evaluation sweep, and the best actions of an improvement step,
+ * are computed in parallel over ranges of the work list: the new values go to a separate array, and each state's
+ * action is only written by the range holding it. Updating the values and the work lists is done afterwards in the
+ * calling thread, in list order, so the results are identical to a sequential run.
+ */
+final class DensePolicyIteration extends DenseSolver {
+
+	/**
+	 * the action the current policy plays in each state, -1 in terminal states
+	 */
+	final int[] policy;
+
+	/**
+	 * the states the next evaluation sweep updates, and the states the next improvement step looks at. Each list
+	 * has a flag per state saying whether it's on it.
+	 */
+	private final WorkList toEvaluate;
+	private final WorkList toImprove;
+
+	/**
+	 * the states being updated by the current evaluation sweep, and their new values
+	 */
+	private int[] sweepStates;
+	private final double[] sweepValues;
+
+	/**
+	 * which states (by position in the list) the current improvement step changed the action of
+	 */
+	private final boolean[] moved;
+
+	/**
+	 * the number of evaluation sweeps and of improvement steps done
+	 */
+	int evaluationSweeps;
+	int improvements;
+
+	/**
+	 * the number of state values computed in evaluation, and of Q-values computed in improvement
+	 */
+	long evaluationBackups;
+	long improvementBackups;
+
+	/**
+	 * the number of actions the last improvement step changed
+	 */
+	int changedActions;
+
+	/**
+	 * The initial policy plays the first action (the lowest numbered cell) in every state.
+	 */
+	DensePolicyIteration(CompiledMDP mdp, double discount) {
+		this(mdp, discount, null);
+	}
+
+	/**
+	 * @param pool the pool to run evaluation and improvement in, or null to run them in the calling thread
+	 */
+	DensePolicyIteration(CompiledMDP mdp, double discount, ForkJoinPool pool) {
+		super(mdp, discount, pool);
+		int n = graph.size();
+		this.policy = new int[n];
+		this.toEvaluate = new WorkList(n);
+		this.toImprove = new WorkList(n);
+		this.sweepStates = new int[n];
+		this.sweepValues = new double[n];
+		this.moved = new boolean[n];
+		for (int s = 0; s < n; s++) {
+			policy[s] = graph.terminal[s] ? -1 : graph.actionStart[s];
+			if (!graph.terminal[s]) {
+				toEvaluate.add(s);
+				toImprove.add(s);
+			}
+		}
+	}
+
+	/**
+	 * Alternates evaluation and improvement until the policy no longer changes and its values have converged.
+	 *
+	 * @param delta     evaluation stops once no value changes by more than this in a sweep
+	 * @param maxSweeps the most evaluation sweeps per round
+	 */
+	void solve(double delta, int maxSweeps) {
+		boolean converged = evaluate(delta, maxSweeps);
+
+		// with a cap on the sweeps, the values may not have converged even if the policy didn't change
+		while (improve() > 0 || !converged)
+			converged = evaluate(delta, maxSweeps);
+	}
+
+	/**
+	 * Evaluates the current policy, starting from the current values.
+	 *
+	 * @return true if the values converged, false if {@code maxSweeps} sweeps were done first
+	 */
+	boolean evaluate(double delta, int maxSweeps) {
+		for (int i = 0; i < maxSweeps; i++) {
+			// take the list, so that states changed by this sweep go on a fresh one for the next
+			int count = toEvaluate.size;
+			final int[] states = toEvaluate.swap(sweepStates);
+			sweepStates = states;
+
+			forEachRange(count, new RangeAction() {
+				public void run(int from, int to) {
+					for (int j = from; j < to; j++)
+						sweepValues[j] = qValue(policy[states[j]]);
+				}
+			});
+
+			double change = 0;
+			for (int j = 0; j < count; j++) {
+				int s = states[j];
+				if (sweepValues[j] != values[s]) {
+					change = Math.max(change, Math.abs(sweepValues[j] - values[s]));
+					values[s] = sweepValues[j];
+					valueChanged(s);
+				}
+			}
+			evaluationSweeps++;
+			evaluationBackups += count;
+
+			if (change <= delta)
+				return true;
+		}
+		return false;
+	}
+
+	private void valueChanged(int s) {
+		for (int p = graph.predStart[s]; p < graph.predStart[s + 1]; p++) {
+			toEvaluate.add(graph.pred[p]);
+			toImprove.add(graph.pred[p]);
+		}
+	}
+
+	/**
+	 * Makes the policy greedy with respect to the current values.
+	 *
+	 * @return the number of states whose action changed
+	 */
+	int improve() {
+		improvements++;
+
+		int count = toImprove.size;
+		final int[] states = toImprove.swap(null);
+		changedActions = sumOverRanges(count, new RangeCount() {
+			public int run(int from, int to) {
+				int changed = 0;
+				for (int j = from; j < to; j++) {
+					int s = states[j];
+					int best = policy[s];
+					double bestQ = qValue(best);
+					for (int a = graph.actionStart[s]; a < graph.actionStart[s + 1]; a++) {
+						double q = qValue(a);
+						if (q > bestQ) {
+							bestQ = q;
+							best = a;
+						}
+					}
+
+					if (best != policy[s]) {
+						policy[s] = best;
+						moved[j] = true;
+						changed++;
+					}
+				}
+				return changed;
+			}
+		});
+
+		for (int j = 0; j < count; j++) {
+			int s = states[j];
+			improvementBackups += graph.actionStart[s + 1] - graph.actionStart[s];
+			if (moved[j]) {
+				moved[j] = false;
+				toEvaluate.add(s);
+			}
+		}
+		return changedActions;
+	}
+
+	/**
+	 * @return the current policy
+	 */
+	Policy extractPolicy() {
+		return toPolicy(policy);
+	}
+
+	/**
+	 * A set of states, in the order they were added
+	 */
+	private static final class WorkList {
+
+		int[] states;
+		int size;
+		private final boolean[] member;
+
+		WorkList(int n) {
+			states = new int[n];
+			member = new boolean[n];
+		}
+
+		void add(int s) {
+			if (!member[s]) {
+				member[s] = true;
+				states[size++] = s;
+			}
+		}
+
+		/**
+		 * Empties the list, handing over its states.
+		 *
+		 * @param spare an array to hold the list from now on, or null to keep the current one (whose contents are
+		 *              then only valid until the next add)
+		 * @return the array holding the states that were on the list
+		 */
+		int[] swap(int[] spare) {
+			int[] taken = states;
+			for (int j = 0; j < size; j++)
+				member[taken[j]] = false;
+			size = 0;
+			if (spare != null)
+				states = spare;
+			return taken;
+		}
+
+	}
+
+}
@@ -0,0 +1,194 @@
+package ticTacToe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * What the array based solvers ({@link DenseValueIteration}, {@link DensePolicyIteration}) share: a {@link CompiledMDP},
+ * a value for every state of its {@link TransitionGraph}, and a way of running work over all states, split across a
+ * {@link ForkJoinPool} if there is one.
+ */
+abstract class DenseSolver {
+
+	final CompiledMDP mdp;
+	final TransitionGraph graph;
+	final double discount;
+
+	/**
+	 * the pool work is run in, null to run it in the calling thread
+	 */
+	final ForkJoinPool pool;
+
+	/**
+	 * does the backups, see {@link BellmanKernel#select()}
+	 */
+	final BellmanKernel kernel;
+
+	/**
+	 * the number of states below which a range of states is not split any further
+	 */
+	static final int GRAIN = 256;
+
+	/**
+	 * the current value of every state
+	 */
+	double[] values;
+
+	/**
+	 * @param pool the pool to run work in, or null to run it in the calling thread
+	 */
+	DenseSolver(CompiledMDP mdp, double discount, ForkJoinPool pool) {
+		this.mdp = mdp;
+		this.graph = mdp.graph;
+		this.discount = discount;
+		this.pool = pool;
+		this.kernel = BellmanKernel.select();
+		this.values = new double[graph.size()];
+	}
+
+	/**
+	 * The expected return of action {@code a} (a Q-value) given the current values.
+	 */
+	double qValue(int a) {
+		return kernel.qValue(graph, mdp.reward, a, values, discount);
+	}
+
+	/**
+	 * @return the policy the solver has come up with
+	 */
+	abstract Policy extractPolicy();
+
+	/**
+	 * @return the current values as a map from games to values
+	 */
+	Map<Game, Double> valueFunction() {
+		Map<Game, Double> valueFunction = new HashMap<Game, Double>();
+		for (int s = 0; s < values.length; s++)
+			valueFunction.put(graph.game(s), values[s]);
+		return valueFunction;
+	}
+
+	/**
+	 * @param actions the action to play in every state, -1 in terminal states
+	 * @return the policy playing those actions
+	 */
+	Policy toPolicy(final int[] actions) {
+		final Game[] games = new Game[values.length];
+		forEachRange(new RangeAction() {
+			public void run(int from, int to) {
+				for (int s = from; s < to; s++)
+					if (actions[s] >= 0)
+						games[s] = graph.game(s);
+			}
+		});
+
+		HashMap<Game, Move> policy = new HashMap<Game, Move>();
+		for (int s = 0; s < values.length; s++)
+			if (actions[s] >= 0)
+				policy.put(games[s], graph.move(actions[s]));
+		return new Policy(policy, graph.canonical, true);
+	}
+
+	/**
+	 * work on the states {@code from} to {@code to}-1
+	 */
+	interface RangeAction {
+		void run(int from, int to);
+	}
+
+	/**
+	 * work on the states {@code from} to {@code to}-1 that counts something
+	 */
+	interface RangeCount {
+		int run(int from, int to);
+	}
+
+	/**
+	 * Runs {@code action} over all states, split into ranges across {@link #pool} if there is one. Returns when all
+	 * ranges are done.
+	 */
+	void forEachRange(RangeAction action) {
+		forEachRange(values.length, action);
+	}
+
+	/**
+	 * Runs {@code action} over the indices 0 to {@code n}-1, like {@link #forEachRange(RangeAction)}.
+	 */
+	void forEachRange(int n, RangeAction action) {
+		if (pool == null || n <= GRAIN)
+			action.run(0, n);
+		else
+			pool.invoke(new RangeTask(action, 0, n));
+	}
+
+	/**
+	 * Runs {@code count} over the indices 0 to {@code n}-1, split into ranges like
+	 * {@link #forEachRange(RangeAction)}.
+	 *
+	 * @return the sum of the counts of all ranges
+	 */
+	int sumOverRanges(int n, RangeCount count) {
+		if (pool == null || n <= GRAIN)
+			return count.run(0, n);
+		return pool.invoke(new CountTask(count, 0, n));
+	}
+
+	private static final class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RangeAction action;
+		private final int from;
+		private final int to;
+
+		RangeTask(RangeAction action, int from, int to) {
+			this.action = action;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				action.run(from, to);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(action, from, mid), new RangeTask(action, mid, to));
+		}
+
+	}
+
+	private static final class CountTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RangeCount count;
+		private final int from;
+		private final int to;
+
+		CountTask(RangeCount count, int from, int to) {
+			this.count = count;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (to - from <= GRAIN)
+				return count.run(from, to);
+
+			int mid = (from + to) >>> 1;
+			CountTask right = new CountTask(count, mid, to);
+			right.fork();
+			int left = new CountTask(count, from, mid).compute();
+			return left + right.join();
+		}
+
+	}
+
+}
@@ -0,0 +1,160 @@
+package ticTacToe;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Value iteration over a {@link CompiledMDP}: states are the dense indices of its {@link TransitionGraph}, values are
+ * kept in a double[], and a backup is a loop over the flat transition arrays, so sweeping allocates nothing. The
+ * value function and policy are only turned into maps (of {@link Game}s) at the end, see {@link #valueFunction()} and
+ * {@link #extractPolicy()}.
+ *
+ * Each sweep computes all new values from the previous sweep's values (as in V_{k+1} from V_k). Terminal states
+ * keep the value 0. Since no state's new value depends on another's, a sweep can be split across the threads of a
+ * {@link ForkJoinPool}; every value is still computed by exactly the same arithmetic, so the results are identical to
+ * those of a sequential run. Extracting the policy is split in the same way.
+ *
+ * Alternatively {@link #solve} sweeps until the values stop changing, optionally updating them in place
+ * (Gauss-Seidel). Either way the largest change of any value in each sweep (the Bellman residual) is recorded.
+ */
+final class DenseValueIteration extends DenseSolver {
+
+	/**
+	 * where the next sweep writes its values
+	 */
+	private double[] next;
+
+	/**
+	 * the residual of each sweep so far
+	 */
+	private double[] residuals = new double[16];
+	private int sweeps;
+
+	DenseValueIteration(CompiledMDP mdp, double discount) {
+		this(mdp, discount, null);
+	}
+
+	/**
+	 * @param pool the pool to run sweeps in, or null to run them in the calling thread
+	 */
+	DenseValueIteration(CompiledMDP mdp, double discount, ForkJoinPool pool) {
+		super(mdp, discount, pool);
+		this.next = new double[graph.size()];
+	}
+
+	/**
+	 * Performs {@code sweeps} value iteration steps.
+	 */
+	void iterate(int sweeps) {
+		for (int i = 0; i < sweeps; i++)
+			sweep(false);
+	}
+
+	/**
+	 * Sweeps until the residual is below {@code epsilon}, but at most {@code maxSweeps} times.
+	 *
+	 * @param inPlace if true, values are updated in place (Gauss-Seidel), in decreasing order of state index. As
+	 *                transitions always go to higher indices, most backups then already see this sweep's values of
+	 *                their successors. In-place sweeps always run in the calling thread.
+	 */
+	void solve(double epsilon, int maxSweeps, boolean inPlace) {
+		for (int i = 0; i < maxSweeps; i++)
+			if (sweep(inPlace) < epsilon)
+				break;
+	}
+
+	/**
+	 * Works out the exact values in one pass: states are visited from the last to the first, i.e. from the most
+	 * pieces on the board back to the empty board, and as every transition goes to a state with a higher index, the
+	 * values a backup uses are already final (backward induction). Counts as one in-place sweep.
+	 */
+	void retrograde() {
+		sweep(true);
+	}
+
+	/**
+	 * does one sweep
+	 *
+	 * @return its residual
+	 */
+	private double sweep(boolean inPlace) {
+		double residual = 0;
+		if (inPlace) {
+			// terminal states are never updated, so keep their initial 0
+			for (int s = values.length - 1; s >= 0; s--)
+				if (!graph.terminal[s]) {
+					double v = bestValue(s);
+					residual = Math.max(residual, Math.abs(v - values[s]));
+					values[s] = v;
+				}
+		} else {
+			forEachRange(new RangeAction() {
+				public void run(int from, int to) {
+					for (int s = from; s < to; s++)
+						next[s] = graph.terminal[s] ? 0 : bestValue(s);
+				}
+			});
+			for (int s = 0; s < values.length; s++)
+				residual = Math.max(residual, Math.abs(next[s] - values[s]));
+
+			double[] v = values;
+			values = next;
+			next = v;
+		}
+
+		if (sweeps == residuals.length)
+			residuals = Arrays.copyOf(residuals, 2 * sweeps);
+		residuals[sweeps++] = residual;
+		return residual;
+	}
+
+	/**
+	 * @return the residual of every sweep done, in order
+	 */
+	double[] residualHistory() {
+		return Arrays.copyOf(residuals, sweeps);
+	}
+
+	/**
+	 * @return the largest Q-value of the (non-terminal) state {@code s} under the current values
+	 */
+	double bestValue(int s) {
+		double best = Double.NEGATIVE_INFINITY;
+		for (int a = graph.actionStart[s]; a < graph.actionStart[s + 1]; a++)
+			best = Math.max(best, qValue(a));
+		return best;
+	}
+
+	/**
+	 * Q-values closer than this to the largest one count as ties, so that the Bellman kernels, which can round
+	 * differently in the last bits, pick the same actions
+	 */
+	static final double TIE = 1e-9;
+
+	/**
+	 * @return the first action of state {@code s} whose Q-value under the current values is within {@link #TIE} of
+	 *         the largest, or -1 if {@code s} is terminal
+	 */
+	int bestAction(int s) {
+		double bestQ = bestValue(s);
+		for (int a = graph.actionStart[s]; a < graph.actionStart[s + 1]; a++)
+			if (qValue(a) >= bestQ - TIE)
+				return a;
+		return -1;
+	}
+
+	/**
+	 * @return the greedy policy with respect to the current values
+	 */
+	Policy extractPolicy() {
+		final int[] actions = new int[values.length];
+		forEachRange(new RangeAction() {
+			public void run(int from, int to) {
+				for (int s = from; s < to; s++)
+					actions[s] = graph.terminal[s] ? -1 : bestAction(s);
+			}
+		});
+		return toPolicy(actions);
+	}
+
+}
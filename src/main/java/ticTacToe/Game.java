@@ -2,8 +2,11 @@ package ticTacToe;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 /**
  * This is a class that defines the environment of a Tic Tac Toe Game: its
@@ -11,8 +14,12 @@ import java.util.List;
  * functionality for playing out a game between two agents, various other useful
  * methods.
  * 
- * 
- * 
+ * By default a game is ordinary 3x3 Tic Tac Toe, but it can also be played on
+ * any m,n,k board of up to 8x8 (see {@link #Game(int, int, int)}): m rows, n
+ * columns, won by getting k in a row. The MDP/RL classes and the policies work
+ * on these through the same API. Methods that rely on tables of the 3x3 state
+ * space (hashes, symmetries, {@link #generateAllValidGames}) are only available
+ * on the 3x3 board.
  * 
  * @author ae187
  *
@@ -36,7 +43,121 @@ public class Game {
 	 */
 	int state = 0;
 
-	char[][] board = new char[3][3];
+	/**
+	 * the size of the board and the number in a row needed to win
+	 */
+	final BoardShape shape;
+	final int rows;
+	final int cols;
+
+	/**
+	 * The board as seen by the outside world. This is kept in sync with
+	 * {@link #xBits} and {@link #oBits}, which are what the game logic actually
+	 * works on, so it should never be written to directly.
+	 */
+	char[][] board;
+
+	/**
+	 * Bitboards for the X and O pieces. Cell (i,j) is bit i*cols+j, i.e. the same
+	 * numbering as the {@link HumanAgent} uses.
+	 */
+	long xBits;
+	long oBits;
+
+	/**
+	 * The board part of {@link #hashCode()} on the 3x3 board: the 9 cells read as
+	 * a base 3 number (' ' is 0, 'X' is 1, 'O' is 2) with cell 0 as the most
+	 * significant digit. It is updated by every move rather than recomputed.
+	 */
+	int boardCode;
+
+	/**
+	 * The board part of {@link #longHashCode()} on other boards: the xor of the
+	 * {@link #ZOBRIST} keys of all pieces, also updated by every move.
+	 */
+	long zobrist;
+
+	/**
+	 * ZOBRIST[side][cell] is a random 64 bit key for an X (side 0) or an O (side
+	 * 1) on that cell. The seed is fixed so that hashes are stable between runs.
+	 */
+	static final long[][] ZOBRIST = new long[2][64];
+
+	/**
+	 * xor-ed into {@link #longHashCode()} when it is o's turn
+	 */
+	static final long ZOBRIST_O_TO_MOVE;
+
+	static {
+		Random r = new Random(0x7177AC70EL);
+		for (int side = 0; side < 2; side++)
+			for (int cell = 0; cell < 64; cell++)
+				ZOBRIST[side][cell] = r.nextLong();
+		ZOBRIST_O_TO_MOVE = r.nextLong();
+	}
+
+	/**
+	 * POW3[cell] is the weight of that cell's digit in {@link #boardCode}
+	 */
+	static final int[] POW3 = { 6561, 2187, 729, 243, 81, 27, 9, 3, 1 };
+
+	/**
+	 * mask with all 9 cells of the 3x3 board set
+	 */
+	static final int FULL = 0x1FF;
+
+	/**
+	 * The 8 winning lines of the 3x3 board as cell masks, in the order in which
+	 * {@link #evaluateGameState()} has always checked them: rows, columns, then
+	 * the two diagonals.
+	 */
+	static final int[] LINES = { 0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054 };
+
+	/**
+	 * For every possible set of cells, the index into {@link #LINES} of the first
+	 * line it completes, or LINES.length if it completes none.
+	 */
+	private static final byte[] FIRST_LINE = new byte[FULL + 1];
+
+	static {
+		for (int bits = 0; bits <= FULL; bits++) {
+			int first = LINES.length;
+			for (int l = 0; l < LINES.length; l++)
+				if ((bits & LINES[l]) == LINES[l]) {
+					first = l;
+					break;
+				}
+			FIRST_LINE[bits] = (byte) first;
+		}
+	}
+
+	/**
+	 * @param bits a set of cells
+	 * @return true if {@code bits} contains a complete line
+	 */
+	static boolean hasLine(int bits) {
+		return FIRST_LINE[bits] != LINES.length;
+	}
+
+	/**
+	 * MOVE_LISTS[side][empty] lists the moves by X (side 0) or O (side 1) into the
+	 * cells of the mask {@code empty} on the 3x3 board. These lists are shared by
+	 * all games.
+	 */
+	@SuppressWarnings("unchecked")
+	private static final List<Move>[][] MOVE_LISTS = new List[2][FULL + 1];
+
+	static {
+		for (int side = 0; side < 2; side++)
+			for (int empty = 0; empty <= FULL; empty++) {
+				List<Move> moves = new ArrayList<Move>(Integer.bitCount(empty));
+				for (int e = empty; e != 0; e &= e - 1) {
+					int cell = Integer.numberOfTrailingZeros(e);
+					moves.add(Move.of(side == 0 ? 'X' : 'O', cell / 3, cell % 3));
+				}
+				MOVE_LISTS[side][empty] = Collections.unmodifiableList(moves);
+			}
+	}
 
 	/**
 	 * the X agent
@@ -50,6 +171,15 @@ public class Game {
 
 	Agent whoseTurn;
 
+	/**
+	 * The undo stack used by {@link #makeMove(int)} and {@link #unmakeMove()}.
+	 * Each entry packs the cell played (bits 0-5), the {@link #state} before the
+	 * move (bits 6-7) and who was to move (bit 8, set for o). Allocated on first
+	 * use and never shared between games.
+	 */
+	private int[] undo;
+	private int undoCount = 0;
+
 	/**
 	 * new game with new X and O agents with null policies
 	 */
@@ -92,6 +222,49 @@ public class Game {
 	 * @param whoseTurn
 	 */
 	public Game(Agent x, Agent o, Agent whoseTurn) {
+		this(x, o, whoseTurn, 3, 3, 3);
+	}
+
+	/**
+	 * A new game on an m,n,k board with new X and O agents, where X plays first.
+	 * 
+	 * @param rows the number of rows, m (at most 8)
+	 * @param cols the number of columns, n (at most 8)
+	 * @param k    the number of pieces in a row needed to win
+	 */
+	public Game(int rows, int cols, int k) {
+		this(new Agent(), new Agent(), rows, cols, k);
+	}
+
+	/**
+	 * A new game on an m,n,k board where x plays first.
+	 * 
+	 * @param x
+	 * @param o
+	 * @param rows the number of rows, m (at most 8)
+	 * @param cols the number of columns, n (at most 8)
+	 * @param k    the number of pieces in a row needed to win
+	 */
+	public Game(Agent x, Agent o, int rows, int cols, int k) {
+		this(x, o, x, rows, cols, k);
+	}
+
+	/**
+	 * A new game on an m,n,k board where it's whoseTurn's turn to play.
+	 * 
+	 * @param x
+	 * @param o
+	 * @param whoseTurn
+	 * @param rows      the number of rows, m (at most 8)
+	 * @param cols      the number of columns, n (at most 8)
+	 * @param k         the number of pieces in a row needed to win
+	 */
+	public Game(Agent x, Agent o, Agent whoseTurn, int rows, int cols, int k) {
+		this.shape = BoardShape.of(rows, cols, k);
+		this.rows = rows;
+		this.cols = cols;
+		this.board = new char[rows][cols];
+
 		this.x = x;
 		x.setName('X');
 
@@ -111,34 +284,161 @@ public class Game {
 	 * 
 	 */
 	public Game(Game g) {
+		this.shape = g.shape;
+		this.rows = g.rows;
+		this.cols = g.cols;
+		this.board = new char[rows][cols];
+
 		this.x = g.x;
 		this.o = g.o;
 		this.whoseTurn = g.whoseTurn;
 		// WARNING: Currently Agents are not deep copied
 
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
-				this.board[i][j] = g.board[i][j];
+		this.xBits = g.xBits;
+		this.oBits = g.oBits;
+		this.boardCode = g.boardCode;
+		this.zobrist = g.zobrist;
+		this.state = g.state;
+		for (int i = 0; i < rows; i++)
+			System.arraycopy(g.board[i], 0, this.board[i], 0, cols);
 
 	}
 
 	public void initBoard() {
 		// fill the board with e's (empty cells)
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
 				board[i][j] = ' ';
 
+		xBits = 0;
+		oBits = 0;
+		boardCode = 0;
+		zobrist = 0;
+
+	}
+
+	/**
+	 * Puts a piece on an empty cell, updating both the bitboards and the char
+	 * board. Does no checking whatsoever.
+	 */
+	private void place(int cell, char who) {
+		if (who == 'X') {
+			xBits |= 1L << cell;
+			zobrist ^= ZOBRIST[0][cell];
+			if (shape.isClassic())
+				boardCode += POW3[cell];
+		} else {
+			oBits |= 1L << cell;
+			zobrist ^= ZOBRIST[1][cell];
+			if (shape.isClassic())
+				boardCode += 2 * POW3[cell];
+		}
+
+		board[cell / cols][cell % cols] = who;
+	}
+
+	/**
+	 * The inverse of {@link #place}.
+	 */
+	private void remove(int cell) {
+		long bit = 1L << cell;
+		if ((xBits & bit) != 0) {
+			xBits &= ~bit;
+			zobrist ^= ZOBRIST[0][cell];
+			if (shape.isClassic())
+				boardCode -= POW3[cell];
+		} else {
+			oBits &= ~bit;
+			zobrist ^= ZOBRIST[1][cell];
+			if (shape.isClassic())
+				boardCode -= 2 * POW3[cell];
+		}
+
+		board[cell / cols][cell % cols] = ' ';
+	}
+
+	/**
+	 * @return the mask of the cells that are still empty
+	 */
+	long emptyCells() {
+		return ~(xBits | oBits) & shape.full;
+	}
+
+	/**
+	 * @return the cell (x*cols+y) move m is played in
+	 */
+	int cellOf(Move m) {
+		return m.x * cols + m.y;
+	}
+
+	/**
+	 * @return the (shared) move by {@code who} into {@code cell}
+	 */
+	Move moveAt(char who, int cell) {
+		return Move.of(who, cell / cols, cell % cols);
+	}
+
+	/**
+	 * @return the number of rows on the board
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the number of columns on the board
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * @return the number of pieces in a row needed to win
+	 */
+	public int getK() {
+		return shape.k;
+	}
+
+	/**
+	 * @param cells a set of cells
+	 * @param n     a number between 0 and the number of cells in the set minus 1
+	 * @return the n'th cell of the set, counting from cell 0 upwards
+	 */
+	static int nthCell(long cells, int n) {
+		for (; n > 0; n--)
+			cells &= cells - 1;
+		return Long.numberOfTrailingZeros(cells);
+	}
+
+	private boolean isEmpty(int x, int y) {
+		return ((xBits | oBits) & (1L << (x * cols + y))) == 0;
+	}
+
+	private boolean isOnBoard(Move m) {
+		return m.x >= 0 && m.x < rows && m.y >= 0 && m.y < cols;
+	}
+
+	/**
+	 * @param bits a set of cells, e.g. {@link #xBits}
+	 * @param cell an empty cell
+	 * @return true if adding {@code cell} to {@code bits} completes a line
+	 */
+	boolean completesLine(long bits, int cell) {
+		if (shape.isClassic())
+			return hasLine((int) bits | 1 << cell);
+
+		return shape.hasLineThrough(bits | 1L << cell, cell);
 	}
 
 	public boolean isLegal(Move m) {
-		if (m.x < 0 || m.x > 2 || m.y < 0 || m.y > 2)
+		if (!isOnBoard(m))
 			return false;
 
 		if (m.who.getName() != whoseTurn.getName()) {
 			return false;
 		}
 
-		if (board[m.x][m.y] != ' ')
+		if (!isEmpty(m.x, m.y))
 			return false;
 
 		return true;
@@ -152,20 +452,18 @@ public class Game {
 	 */
 	public List<Game> getAllSuccessorGames() {
 		List<Game> result = new ArrayList<Game>();
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (board[i][j] == ' ') {
-					Game newGame = null;
-					try {
-						newGame = this.simulateMove(whoseTurn.getName(), i, j);
-					} catch (IllegalMoveException e) {
-						System.out.println(e.getMessage());
-						e.printStackTrace();
-					}
-					// System.out.println("Adding:\n"+newGame);
-					result.add(newGame);
-				}
+		for (long empty = emptyCells(); empty != 0; empty &= empty - 1) {
+			int cell = Long.numberOfTrailingZeros(empty);
+			Game newGame = null;
+			try {
+				newGame = this.simulateMove(whoseTurn.getName(), cell / cols, cell % cols);
+			} catch (IllegalMoveException e) {
+				System.out.println(e.getMessage());
+				e.printStackTrace();
 			}
+			// System.out.println("Adding:\n"+newGame);
+			result.add(newGame);
+		}
 
 		return result;
 
@@ -174,76 +472,119 @@ public class Game {
 	/**
 	 * A static method to generate all valid game states where it is either X's turn
 	 * or O's turn as specified by {@code xo} argument. NOTE: this method will
-	 * include ALL terminal states in the game.
+	 * include ALL terminal states in the game. 3x3 board only.
 	 * 
 	 * @param xo specifies whose turn it should be in the resulting games.
 	 * @return
 	 */
 	public static List<Game> generateAllValidGames(char xo) {
 		List<Game> result = new ArrayList<Game>();
-		// this is the number of possible game hashes (2222222222 in base 3): 59048 -
-		// not all are valid. Here we only return the valid ones.
-		for (int i = 0; i < 59048; i++) {
-			Game g = inverseHash(i);
-			if (g == null)
-				continue;
-
-			if (g.isValid()) {
-				// System.out.println("for:"+i);
-				// System.out.println("got:\n"+g);
-				// System.out.println("turn:"+g.whoseTurn.getName());
-				// System.out.println("--------");
-				g.evaluateGameState();
-				if (g.whoseTurn.getName() == xo || g.isTerminal())
-					result.add(g);
-			}
-
+		// the valid states are only worked out once, see StateCatalogue
+		StateCatalogue catalogue = StateCatalogue.get();
+		for (int i = 0; i < catalogue.size(); i++) {
+			if (catalogue.toMove(i) == xo || catalogue.isTerminal(i))
+				result.add(catalogue.game(i));
 		}
 
 		return result;
 	}
 
 	/**
-	 * returns a list of all available moves by the agent whose turn it is.
+	 * Like {@link #generateAllValidGames(char)}, but only with the games that can
+	 * come up in play, whichever player starts (see {@link #reachableGames}). The
+	 * games are ordered by the number of pieces on the board, so every game comes
+	 * before all games that can follow it. 3x3 board only.
+	 *
+	 * @param xo specifies whose turn it should be in the resulting games.
+	 * @return
+	 */
+	public static List<Game> generateReachableGames(char xo) {
+		if (xo != 'X' && xo != 'O')
+			throw new IllegalArgumentException("Argument should be either 'X' or 'O'");
+
+		List<Game> result = new ArrayList<Game>();
+		ReachableStates[] starts = { ReachableStates.get('X'), ReachableStates.get('O') };
+		for (int ply = 0; starts[0].layer(ply) != null || starts[1].layer(ply) != null; ply++)
+			for (ReachableStates start : starts) {
+				Game[] layer = start.layer(ply);
+				if (layer == null)
+					continue;
+
+				for (Game g : layer)
+					if (g.whoseTurn.getName() == xo || g.isTerminal())
+						result.add(new Game(g));
+			}
+
+		return result;
+	}
+
+	/**
+	 * All the games that can come up in play on the 3x3 board when {@code first}
+	 * starts, including terminal ones, grouped by ply: first the empty board, then
+	 * all games with one piece, and so on. The games are worked out as the stream
+	 * is consumed (and kept for later streams), and each one is a new copy. The
+	 * stream can be made parallel.
+	 *
+	 * @param first 'X' or 'O'
+	 * @return
+	 */
+	public static Stream<Game> reachableGames(char first) {
+		return ReachableStates.get(first).stream();
+	}
+
+	/**
+	 * As {@link #reachableGames(char)}, on an m,n,k board. Nothing is kept between
+	 * calls for boards other than 3x3, and on larger boards the number of games
+	 * grows very quickly, so consume only what is needed.
+	 *
+	 * @param first 'X' or 'O'
+	 * @param rows  the number of rows, m (at most 8)
+	 * @param cols  the number of columns, n (at most 8)
+	 * @param k     the number of pieces in a row needed to win
+	 * @return
+	 */
+	public static Stream<Game> reachableGames(char first, int rows, int cols, int k) {
+		return ReachableStates.get(first, rows, cols, k).stream();
+	}
+
+	/**
+	 * returns a list of all available moves by the agent whose turn it is. The list
+	 * is shared, and must not be modified.
 	 * 
 	 * @return
 	 */
 	public List<Move> getPossibleMoves() {
-		List<Move> possibleMoves = new ArrayList<Move>();
 		// if it's not our turn then no moves possible.
 		if (getState() != ONGOING)
-			return possibleMoves;
-
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (getBoard()[i][j] == ' ')
-					possibleMoves.add(new Move(whoseTurn, i, j));
-			}
+			return Collections.emptyList();
 
-		return possibleMoves;
+		return movesInto(whoseTurn.getName(), emptyCells());
 
 	}
 
 	/**
 	 * returns a list of all available moves by the agent whose turn it is NOT. Used
-	 * by the defensive agent.
+	 * by the defensive agent. The list is shared, and must not be modified.
 	 * 
 	 * @return
 	 */
 	public List<Move> getPossibleMovesByOpponent() {
-		List<Move> possibleMoves = new ArrayList<Move>();
 		// if it's not our turn then no moves possible.
 		if (getState() != ONGOING)
-			return possibleMoves;
+			return Collections.emptyList();
 
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (getBoard()[i][j] == ' ')
-					possibleMoves.add(new Move((whoseTurn.getName() == 'X') ? 'O' : 'X', i, j));
-			}
+		return movesInto((whoseTurn.getName() == 'X') ? 'O' : 'X', emptyCells());
+
+	}
 
-		return possibleMoves;
+	private List<Move> movesInto(char who, long cells) {
+		if (shape.isClassic())
+			return MOVE_LISTS[who == 'X' ? 0 : 1][(int) cells];
 
+		List<Move> moves = new ArrayList<Move>(Long.bitCount(cells));
+		for (; cells != 0; cells &= cells - 1)
+			moves.add(moveAt(who, Long.numberOfTrailingZeros(cells)));
+		return Collections.unmodifiableList(moves);
 	}
 
 	public char[][] getBoard() {
@@ -252,9 +593,9 @@ public class Game {
 
 	public String toString() {
 		String result = "\n";
-		for (int i = 0; i < 3; i++) {
+		for (int i = 0; i < rows; i++) {
 			result += "|";
-			for (int j = 0; j < 3; j++) {
+			for (int j = 0; j < cols; j++) {
 				result += board[i][j] + "|";
 
 			}
@@ -274,113 +615,52 @@ public class Game {
 	 */
 	public int evaluateGameState() {
 
-		// checking columns
-		if (board[0][0] != ' ' && board[0][0] == board[0][1] && board[0][1] == board[0][2]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
+		// the first complete line (in the usual order) decides who won
+		if (shape.isClassic()) {
+			int xLine = FIRST_LINE[(int) xBits];
+			int oLine = FIRST_LINE[(int) oBits];
+			if (xLine != LINES.length || oLine != LINES.length)
+				this.state = (xLine < oLine) ? X_WON : O_WON;
+			else if ((xBits | oBits) == FULL)
+				this.state = DRAW;
 			else
-				this.state = O_WON;
+				this.state = ONGOING;
 
 			return this.state;
-
-		}
-		if (board[1][0] != ' ' && board[1][0] == board[1][1] && board[1][1] == board[1][2]) {
-			if (board[1][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[2][0] != ' ' && board[2][0] == board[2][1] && board[2][1] == board[2][2]) {
-			if (board[2][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
 		}
 
-		// checking rows
-
-		if (board[0][0] != ' ' && board[0][0] == board[1][0] && board[1][0] == board[2][0]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[0][1] != ' ' && board[0][1] == board[1][1] && board[1][1] == board[2][1]) {
-			if (board[0][1] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[0][2] != ' ' && board[0][2] == board[1][2] && board[1][2] == board[2][2]) {
-			if (board[0][2] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		// checking diagnols
-
-		if (board[0][0] != ' ' && board[0][0] == board[1][1] && board[1][1] == board[2][2]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
+		for (long line : shape.lines) {
+			if ((xBits & line) == line)
+				return this.state = X_WON;
+			if ((oBits & line) == line)
+				return this.state = O_WON;
 		}
+		this.state = ((xBits | oBits) == shape.full) ? DRAW : ONGOING;
 
-		if (board[2][0] != ' ' && board[2][0] == board[1][1] && board[1][1] == board[0][2]) {
-			if (board[2][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
+		return this.state;
 
-		boolean spacesLeft = false;
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (board[i][j] == ' ') {
-					spacesLeft = true;
-					break;
+	}
 
-				}
-			}
+	/**
+	 * Updates the game state after a piece has been put on {@code cell}. On boards
+	 * other than 3x3, only the lines through that cell can have been completed, so
+	 * only those are checked.
+	 */
+	private int evaluateAfterMove(int cell) {
+		if (shape.isClassic() || this.state != ONGOING)
+			return evaluateGameState();
 
-		if (spacesLeft)
-			this.state = ONGOING;
+		boolean byX = (xBits & (1L << cell)) != 0;
+		if (shape.hasLineThrough(byX ? xBits : oBits, cell))
+			this.state = byX ? X_WON : O_WON;
 		else
-			this.state = DRAW;
+			this.state = ((xBits | oBits) == shape.full) ? DRAW : ONGOING;
 
 		return this.state;
-
 	}
 
 	private int count(char xo) {
-		int count = 0;
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
-				if (board[i][j] == xo)
-					count++;
-		return count;
+		return Long.bitCount(xo == 'X' ? xBits : oBits);
 	}
 
 	/**
@@ -408,13 +688,12 @@ public class Game {
 	 * changing the current one.
 	 * 
 	 * @param who the agent making move (X or O)
-	 * @param x   the x coordinate of the move (between 0 and 2 inclusive)
-	 * @param y   the y coordinate of the move
+	 * @param x   the x coordinate of the move (the row)
+	 * @param y   the y coordinate of the move (the column)
 	 * @return
 	 */
 	public Game simulateMove(char who, int x, int y) throws IllegalMoveException {
-		Move m = new Move(who, x, y);
-		return simulateMove(m);
+		return simulateMove(Move.of(who, x, y));
 
 	}
 
@@ -432,11 +711,14 @@ public class Game {
 		if (whoseTurn == o && m.who.getName() != 'O')
 			throw new IllegalMoveException("it is not o's turn");
 
-		if (board[m.x][m.y] != ' ')
+		if (!isOnBoard(m))
+			throw new IllegalMoveException("Invalid move. The square is off the board: " + m);
+
+		if (!isEmpty(m.x, m.y))
 			throw new IllegalMoveException("Invalid move. The square is " + m);
 
 		Game copy = clone();
-		copy.board[m.x][m.y] = m.who.getName();
+		copy.place(cellOf(m), m.who.getName());
 		if (m.who.getName() == 'X')
 			copy.whoseTurn = copy.o;
 		else if (m.who.getName() == 'O')
@@ -444,7 +726,7 @@ public class Game {
 		else
 			throw new IllegalArgumentException();
 
-		copy.evaluateGameState();
+		copy.evaluateAfterMove(cellOf(m));
 
 		return copy;
 
@@ -462,10 +744,13 @@ public class Game {
 		if (whoseTurn == o && m.who.getName() != 'O')
 			throw new IllegalMoveException("it is not X's turn");
 
-		if (board[m.x][m.y] != ' ')
+		if (!isOnBoard(m))
+			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is off the board");
+
+		if (!isEmpty(m.x, m.y))
 			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not empty");
 
-		board[m.x][m.y] = m.who.getName();
+		place(cellOf(m), m.who.getName());
 		if (whoseTurn.getName() == 'X')
 			whoseTurn = o;
 		else if (m.who.getName() == 'O')
@@ -473,7 +758,7 @@ public class Game {
 		else
 			throw new IllegalArgumentException();
 
-		this.evaluateGameState();
+		this.evaluateAfterMove(cellOf(m));
 
 	}
 
@@ -482,15 +767,60 @@ public class Game {
 	 * changing the current one.
 	 * 
 	 * @param who the agent making move (X or O)
-	 * @param x   the x coordinate of the move (between 0 and 2 inclusive)
-	 * @param y   the y coordinate of the move (between 0 and 2 inclusive)
+	 * @param x   the x coordinate of the move (the row)
+	 * @param y   the y coordinate of the move (the column)
 	 */
 	public void executeMove(char who, int x, int y) throws IllegalMoveException {
-		Move m = new Move(who, x, y);
-		executeMove(m);
+		executeMove(Move.of(who, x, y));
 
 	}
 
+	/**
+	 * Plays move m on this game, in place, so that it can be taken back again with
+	 * {@link #unmakeMove()}. This is meant for searching the game tree without
+	 * allocating a new Game for every node: make a move, look at the result, then
+	 * unmake it.
+	 * 
+	 * @param m
+	 * @throws IllegalMoveException if m is not legal in this game
+	 */
+	public void makeMove(Move m) throws IllegalMoveException {
+		if (!isLegal(m))
+			throw new IllegalMoveException("Illegal move " + m + " on:" + this);
+
+		makeMove(cellOf(m));
+	}
+
+	/**
+	 * As {@link #makeMove(Move)}, for the player whose turn it is, but without any
+	 * checks: {@code cell} (x*cols+y) must be empty.
+	 * 
+	 * @param cell
+	 */
+	public void makeMove(int cell) {
+		if (undo == null)
+			undo = new int[shape.cells];
+
+		undo[undoCount++] = cell | state << 6 | (whoseTurn == x ? 0 : 1) << 8;
+		place(cell, whoseTurn.getName());
+		whoseTurn = (whoseTurn == x) ? o : x;
+		evaluateAfterMove(cell);
+	}
+
+	/**
+	 * Takes back the last move played with {@link #makeMove}, restoring the board,
+	 * whose turn it is and the game state exactly as they were.
+	 */
+	public void unmakeMove() {
+		if (undoCount == 0)
+			throw new IllegalStateException("There is no move to unmake");
+
+		int u = undo[--undoCount];
+		remove(u & 0x3F);
+		state = (u >> 6) & 3;
+		whoseTurn = ((u >> 8) & 1) == 0 ? x : o;
+	}
+
 	/**
 	 * 
 	 * /** This method will play out the game to the end using moves from the X and
@@ -537,6 +867,107 @@ public class Game {
 		return new Game(this);
 	}
 
+	/**
+	 * The board has 8 symmetries (rotations and reflections), numbered 0 to 7 with
+	 * 0 the identity. Symmetric games have the same value and their moves
+	 * correspond one to one, so state keyed tables only need to store one of them:
+	 * the canonical one. 3x3 board only.
+	 *
+	 * @return the symmetry that takes this game to its canonical form
+	 */
+	public int canonicalTransform() {
+		requireClassic();
+		return Symmetry.canonicalTransform(boardCode);
+	}
+
+	/**
+	 *
+	 * @param t a symmetry, between 0 and 7
+	 * @return a copy of this game with its board rotated/reflected by {@code t}
+	 */
+	public Game transform(int t) {
+		requireClassic();
+		Game copy = clone();
+		copy.initBoard();
+		for (long bits = xBits; bits != 0; bits &= bits - 1)
+			copy.place(Symmetry.CELL[t][Long.numberOfTrailingZeros(bits)], 'X');
+		for (long bits = oBits; bits != 0; bits &= bits - 1)
+			copy.place(Symmetry.CELL[t][Long.numberOfTrailingZeros(bits)], 'O');
+		copy.state = this.state;
+
+		return copy;
+	}
+
+	/**
+	 * @return the canonical form of this game, i.e. the same game as
+	 *         {@code transform(canonicalTransform())}
+	 */
+	public Game canonical() {
+		return transform(canonicalTransform());
+	}
+
+	/**
+	 * @return true if this game is its own canonical form
+	 */
+	public boolean isCanonical() {
+		requireClassic();
+		return Symmetry.canonicalCode(boardCode) == boardCode;
+	}
+
+	private void requireClassic() {
+		if (!shape.isClassic())
+			throw new UnsupportedOperationException("Only implemented for the 3x3 board, not " + shape);
+	}
+
+	/**
+	 * Maps a move in this game to the corresponding move in the game after
+	 * symmetry {@code t} has been applied.
+	 */
+	public static Move transformMove(Move m, int t) {
+		int cell = Symmetry.CELL[t][m.x * 3 + m.y];
+		return Move.of(m.who.getName(), cell / 3, cell % 3);
+	}
+
+	/**
+	 * The inverse of {@link #transformMove}: maps a move in the transformed game
+	 * back to the original game.
+	 */
+	public static Move inverseTransformMove(Move m, int t) {
+		int cell = Symmetry.INVERSE[t][m.x * 3 + m.y];
+		return Move.of(m.who.getName(), cell / 3, cell % 3);
+	}
+
+	/**
+	 * Swapping X and O is a symmetry too: in the returned game every X is an O and
+	 * vice versa, and the other side is to move, so O's position in this game is
+	 * X's position in that one. Works on any board.
+	 *
+	 * @return a copy of this game with the sides swapped
+	 */
+	public Game swapSides() {
+		Game copy = clone();
+		copy.initBoard();
+		for (long bits = xBits; bits != 0; bits &= bits - 1)
+			copy.place(Long.numberOfTrailingZeros(bits), 'O');
+		for (long bits = oBits; bits != 0; bits &= bits - 1)
+			copy.place(Long.numberOfTrailingZeros(bits), 'X');
+		copy.whoseTurn = (whoseTurn == x) ? o : x;
+		if (state == X_WON)
+			copy.state = O_WON;
+		else if (state == O_WON)
+			copy.state = X_WON;
+
+		return copy;
+	}
+
+	/**
+	 * Maps a move in this game to the corresponding move in the game after
+	 * {@link #swapSides()}: the same cell, played by the other side.
+	 */
+	public static Move swapSides(Move m) {
+		return Move.of(m.who.getName() == 'X' ? 'O' : 'X', m.x, m.y);
+	}
+
 	/**
 	 * A hashCode function implemented assuming the game board is a 10 digit number
 	 * in base three, where: ' ' maps to 0 'X' maps to 1 'O' maps to 2
@@ -549,34 +980,33 @@ public class Game {
 	 * You can use this method to store (e.g. write to file) your value functions or
 	 * policies.
 	 * 
+	 * On boards other than 3x3 this is just a fold of {@link #longHashCode()}.
+	 * 
 	 * @return an integer representation of the game
 	 */
 	public int hashCode() {
-		// ' ' ->0
-		// 'X' ->1
-		// 'O' ->2
-		String s = "";
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				switch (board[i][j]) {
-				case 'X':
-					s += "1";
-					break;
-				case 'O':
-					s += "2";
-					break;
-				case ' ':
-					s += "0";
-					break;
-				}
+		if (!shape.isClassic()) {
+			long h = longHashCode();
+			return (int) (h ^ (h >>> 32));
+		}
 
-			}
-		// also encode whose turn it is. Either 1 or 2 (x or o)
+		// also encode whose turn it is as the last digit. Either 1 or 2 (x or o)
+		return boardCode * 3 + ((whoseTurn == x) ? 1 : 2);
 
-		s += (whoseTurn == x) ? "1" : "2";
+	}
 
-		return Integer.parseInt(s, 3);
+	/**
+	 * A 64 bit hash of the game. On the 3x3 board this is the same as
+	 * {@link #hashCode()}, and so exact; on other boards it is a Zobrist hash of
+	 * the pieces and whose turn it is.
+	 * 
+	 * @return
+	 */
+	public long longHashCode() {
+		if (shape.isClassic())
+			return hashCode();
 
+		return (whoseTurn == x) ? zobrist : zobrist ^ ZOBRIST_O_TO_MOVE;
 	}
 
 	/**
@@ -585,49 +1015,32 @@ public class Game {
 	 * method.
 	 * 
 	 * You can use this method to read your policy or value functions from file.
+	 * The games it returns are always on the 3x3 board.
 	 * 
 	 * @param hash
 	 * @return the Game corresponding to the hash
 	 */
 	public static Game inverseHash(int hash) {
 
-		Game g = new Game();
+		if (hash < 0 || hash >= StateCatalogue.HASHES)
+			throw new IllegalArgumentException("Not a game hash: " + hash);
 
-		String s1 = Integer.toString(hash, 3);
-
-		if (s1.charAt(s1.length() - 1) == '0')
+		// the last digit says whose turn it is: 1 for x, 2 for o
+		int turn = hash % 3;
+		if (turn == 0)
 			return null;
 
-		// add leading 0's
-		String s = new String(s1);
-
-		for (int i = 0; i < 10 - s1.length(); i++) {
-			s = "0" + s;
-		}
-		// System.out.println("Intermediate string:"+s);
-		// set whose turn
-		if (s.charAt(s.length() - 1) == '1')
-			g.whoseTurn = g.x;
-		else if (s.charAt(s.length() - 1) == '2')
+		Game g = new Game();
+		if (turn == 2)
 			g.whoseTurn = g.o;
 
-		for (int l = s.length() - 2; l >= 0; l--) {
-			int i = (int) l / 3;
-			int j = (int) l % 3;
-			switch (s.charAt(l)) {
-			case '0':
-				g.board[i][j] = ' ';
-				break;
-			case '1':
-				g.board[i][j] = 'X';
-				break;
-			case '2':
-				g.board[i][j] = 'O';
-				break;
-			default:
-				throw new IllegalStateException("this shouldn't happen!");
-
-			}
+		int code = hash / 3;
+		for (int cell = 8; cell >= 0; cell--, code /= 3) {
+			int digit = code % 3;
+			if (digit == 1)
+				g.place(cell, 'X');
+			else if (digit == 2)
+				g.place(cell, 'O');
 		}
 
 		return g;
@@ -639,7 +1052,12 @@ public class Game {
 		else if (!(other instanceof Game))
 			return false;
 
-		return this.hashCode() == other.hashCode();
+		Game g = (Game) other;
+		if (this.shape.isClassic() && g.shape.isClassic())
+			return this.boardCode == g.boardCode && (this.whoseTurn == this.x) == (g.whoseTurn == g.x);
+
+		return this.shape == g.shape && this.xBits == g.xBits && this.oBits == g.oBits
+				&& (this.whoseTurn == this.x) == (g.whoseTurn == g.x);
 	}
 
 	public int getState() {
@@ -651,9 +1069,10 @@ public class Game {
 		return this.state != ONGOING;
 	}
 
-	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, random, agg, def, human>"
-			+ "\n -o the O agent: -o <random, agg, def, human>"
-			+ "\n -s the agent that starts the game (x or o): -s <x or o>";
+	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, retro, rtdp, minimax, mcts, ql, random, agg, def, human>"
+			+ "\n -o the O agent: -o <pi, vi, retro, rtdp, minimax, mcts, ql, random, agg, def, human>"
+			+ "\n -s the agent that starts the game (x or o): -s <x or o>"
+			+ "\n -b the board: -b <rows,cols,k> e.g. -b 4,4,4 (default 3,3,3). vi, pi, retro, minimax and ql only play 3,3,3";
 
 	// public static void main(String args[]) throws IllegalMoveException
 	// {
@@ -700,6 +1119,25 @@ public class Game {
 		Agent x = null;
 		Agent o = null;
 		String whoseTurn = null;
+		int[] dims = { 3, 3, 3 };
+
+		// the board first, so that agents that only play 3,3,3 are turned down before they are trained
+		int b = args.indexOf("-b");
+		if (b >= 0) {
+			String[] parts = (b + 1 < args.size()) ? args.get(b + 1).split(",") : new String[0];
+			try {
+				if (parts.length != 3)
+					throw new NumberFormatException();
+				for (int i = 0; i < 3; i++)
+					dims[i] = Integer.parseInt(parts[i].trim());
+			} catch (NumberFormatException e) {
+				System.out.println("Error: -b should be followed by the board as rows,cols,k e.g. 4,4,4");
+				return;
+			}
+		}
+		boolean classic = dims[0] == 3 && dims[1] == 3 && dims[2] == 3;
+		List<String> classicOnly = Arrays.asList("vi", "pi", "retro", "minimax", "ql");
+
 		Iterator<String> iter = args.iterator();
 
 		while (iter.hasNext()) {
@@ -707,17 +1145,34 @@ public class Game {
 			String next = null;
 			switch (cur) {
 			case "-x":
-				next = iter.next();
+				next = iter.hasNext() ? iter.next() : null;
 				if (next == null || next.startsWith("-")) {
 					System.out.println("-x should be followed by the agent name, vi, pi, random, agg, def, or human");
 					return;
 				}
+				if (!classic && classicOnly.contains(next)) {
+					System.out.println("Error: the " + next + " agent only plays the 3,3,3 board, not " + dims[0] + ","
+							+ dims[1] + "," + dims[2] + ". Try rtdp, mcts, random, agg, def or human.");
+					return;
+				}
 				if (next.equals("vi")) {
 					System.out.println("x is vi agent.");
 					x = new ValueIterationAgent();
 				} else if (next.equals("pi")) {
 					System.out.println("X is pi agent.");
 					x = new PolicyIterationAgent();
+				} else if (next.equals("retro")) {
+					System.out.println("X is retrograde agent.");
+					x = new RetrogradeAgent();
+				} else if (next.equals("rtdp")) {
+					System.out.println("X is rtdp agent.");
+					x = new RTDPAgent(0.9, dims[0], dims[1], dims[2]);
+				} else if (next.equals("minimax")) {
+					System.out.println("X is minimax agent.");
+					x = new MinimaxAgent();
+				} else if (next.equals("mcts")) {
+					System.out.println("X is mcts agent.");
+					x = new MCTSAgent();
 				} else if (next.equals("random")) {
 					System.out.println("X is random agent.");
 					x = new RandomAgent();
@@ -735,26 +1190,40 @@ public class Game {
 					System.out.println("X is q learning agent.");
 					x = new QLearningAgent();
 				} else {
-					System.out.println("-x should be followed by the agent type: vi, pi, ql, random or human");
+					System.out.println("-x should be followed by the agent type: vi, pi, retro, rtdp, minimax, mcts, ql, random or human");
 					return;
 
 				}
 				break;
 			case "-o":
-				next = iter.next();
-
+				next = iter.hasNext() ? iter.next() : null;
 				if (next == null || next.startsWith("-")) {
-					System.out.println("-o should be followed by the agent name e.g. random or human");
+					System.out.println("-o should be followed by the agent name e.g. vi, ql, random or human");
 					return;
 				}
-				if (next.equals("vi")) {
-					System.out.println("Error: the value iteration agent should be the X agent");
+				if (!classic && classicOnly.contains(next)) {
+					System.out.println("Error: the " + next + " agent only plays the 3,3,3 board, not " + dims[0] + ","
+							+ dims[1] + "," + dims[2] + ". Try rtdp, mcts, random, agg, def or human.");
 					return;
 				}
-
-				else if (next.equals("pi")) {
-					System.out.println("Error: the policy iteration agent should be the X agent");
-					return;
+				if (next.equals("vi")) {
+					System.out.println("O is vi agent.");
+					o = new ValueIterationAgent();
+				} else if (next.equals("pi")) {
+					System.out.println("O is pi agent.");
+					o = new PolicyIterationAgent();
+				} else if (next.equals("retro")) {
+					System.out.println("O is retrograde agent.");
+					o = new RetrogradeAgent();
+				} else if (next.equals("rtdp")) {
+					System.out.println("O is rtdp agent.");
+					o = new RTDPAgent(0.9, dims[0], dims[1], dims[2]);
+				} else if (next.equals("minimax")) {
+					System.out.println("O is minimax agent.");
+					o = new MinimaxAgent();
+				} else if (next.equals("mcts")) {
+					System.out.println("O is mcts agent.");
+					o = new MCTSAgent();
 				} else if (next.equals("random"))
 					o = new RandomAgent();
 				else if (next.equals("human")) {
@@ -771,13 +1240,13 @@ public class Game {
 					System.out.println("O is q learning agent.");
 					o = new QLearningAgent();
 				} else {
-					System.out.println("Error: -x should be followed by the agent type: vi, pi, random or human");
+					System.out.println("Error: -o should be followed by the agent type: vi, pi, retro, rtdp, minimax, mcts, ql, random or human");
 					return;
 
 				}
 				break;
 			case "-s":
-				next = iter.next();
+				next = iter.hasNext() ? iter.next() : null;
 				if (next == null) {
 					System.out.println("Error: -s should be followed by the agent that starts the game: X or O");
 					return;
@@ -790,6 +1259,11 @@ public class Game {
 					return;
 				}
 				break;
+			case "-b":
+				// read above
+				if (iter.hasNext())
+					iter.next();
+				break;
 
 			}
 
@@ -810,9 +1284,9 @@ public class Game {
 
 		Game g;
 		if (whoseTurn == null || whoseTurn.equals("x"))
-			g = new Game(x, o);
+			g = new Game(x, o, x, dims[0], dims[1], dims[2]);
 		else
-			g = new Game(x, o, o);
+			g = new Game(x, o, o, dims[0], dims[1], dims[2]);
 
 		g.playOut();
 
@@ -20,9 +20,14 @@ public class HumanAgent extends Agent {
 	{
 		// show user possible moves.
 		System.out.println("Choose location to put your "+name+" based on the following scheme.");
-		System.out.println("0|1|2\n" +
-				           "3|4|5\n" +
-				           "6|7|8");
+		String scheme="";
+		for(int i=0;i<g.getRows();i++)
+		{
+			for(int j=0;j<g.getCols();j++)
+				scheme+=(j==0?"":"|")+(i*g.getCols()+j);
+			scheme+="\n";
+		}
+		System.out.print(scheme);
 		System.out.print("Your move: ");
 		
 		// read in user input. If bad input is specified, allow user to try again. 
@@ -39,16 +44,16 @@ public class HumanAgent extends Agent {
 			return getMove(g);
 		}
 		
-		int x=move/3;
-		int y=move%3;
+		int x=move/g.getCols();
+		int y=move%g.getCols();
 		
-		if (x<0 || x>2 || y<0 || y>2)
+		if (move<0 || x>=g.getRows())
 		{
 			System.out.println("Invalid number chosen. Choose again.");
 			return getMove(g);
 		}
 		
-		Move m=new Move(name, x, y);
+		Move m=Move.of(name, x, y);
 		if (!g.isLegal(m))
 		{
 			System.out.println("Illegal move. Choose again.");
@@ -0,0 +1,319 @@
+package ticTacToe;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Monte Carlo Tree Search agent using UCT (Kocsis and Szepesvari 2006). For each move it grows a search tree from
+ * the current game: it walks down the tree picking the child with the best upper confidence bound, adds one new
+ * node, plays the game out at random from there, and counts the result in every node on the way back up. It then
+ * plays the move that was tried most. Nothing is solved in advance, so it plays either side, on any board, and the
+ * more iterations it gets, the better it plays.
+ *
+ * The budget per move is a number of iterations, a time limit, or both (whichever runs out first). Several threads
+ * can grow the same tree (tree parallelism). Each node is locked only while it is being read or updated, and a thread
+ * walking through a node adds a virtual loss to it until its result is counted, so that other threads are steered to
+ * other parts of the tree meanwhile.
+ *
+ * Each thread works on its own copy of the game, and walks down the tree and plays out with
+ * {@link Game#makeMove(int)} and {@link Game#unmakeMove()}, so an iteration only allocates the node it adds.
+ *
+ */
+public class MCTSAgent extends Agent {
+
+	/**
+	 * the exploration constant of the upper confidence bound
+	 */
+	double exploration=Math.sqrt(2);
+
+	/**
+	 * the most iterations per move, 0 for no limit
+	 */
+	int iterations;
+
+	/**
+	 * the most time per move in milliseconds, 0 for no limit
+	 */
+	long millis;
+
+	/**
+	 * the number of threads that grow the tree
+	 */
+	int threads;
+
+	/**
+	 * runs the threads of all agents other than the calling one. It is shared, so agents need no shutting down; its
+	 * threads are daemons, and die after a minute without work.
+	 */
+	private static final ExecutorService EXECUTOR=Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t=new Thread(r, "mcts");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * the number of iterations done for the last move
+	 */
+	volatile int lastIterations;
+
+	/**
+	 * A search with 10000 iterations per move, in one thread
+	 */
+	public MCTSAgent()
+	{
+		this(10000);
+	}
+
+	/**
+	 * @param iterations the number of iterations per move
+	 */
+	public MCTSAgent(int iterations)
+	{
+		this(iterations, 0, 1);
+	}
+
+	/**
+	 * @param iterations the most iterations per move, 0 for no limit
+	 * @param millis the most time per move in milliseconds, 0 for no limit
+	 * @param threads the number of threads, at least 1
+	 */
+	public MCTSAgent(int iterations, long millis, int threads)
+	{
+		if (iterations<0 || millis<0 || (iterations==0 && millis==0))
+			throw new IllegalArgumentException("There should be a limit on the iterations or the time");
+		if (threads<1)
+			throw new IllegalArgumentException("threads should be at least 1");
+
+		this.iterations=iterations;
+		this.millis=millis;
+		this.threads=threads;
+
+		super.policy=new Policy() {
+			public Move getMove(Game g) {
+				return search(g);
+			}
+		};
+	}
+
+	/**
+	 * A node of the search tree. Its statistics are from the point of view of the side that moved into it, and are
+	 * only changed with the node locked.
+	 */
+	private static final class Node
+	{
+		final Node parent;
+
+		/**
+		 * the cell played to get here, and who played it
+		 */
+		final int cell;
+		final char mover;
+
+		final boolean terminal;
+
+		/**
+		 * the moves not added as children yet
+		 */
+		long untried;
+
+		final List<Node> children=new ArrayList<Node>();
+
+		/**
+		 * playouts counted, the mover's score over them (1 a win, 0.5 a draw), and playouts still running through
+		 */
+		volatile int visits;
+		volatile double wins;
+		volatile int virtualLosses;
+
+		Node(Node parent, int cell, char mover, Game g)
+		{
+			this.parent=parent;
+			this.cell=cell;
+			this.mover=mover;
+			this.terminal=g.isTerminal();
+			this.untried=terminal?0:g.emptyCells();
+		}
+
+		/**
+		 * @return the upper confidence bound of this node, counting virtual losses as lost playouts
+		 */
+		double ucb(double logParent, double exploration)
+		{
+			int n=visits+virtualLosses;
+			if (n==0)
+				return Double.POSITIVE_INFINITY;
+			return wins/n+exploration*Math.sqrt(logParent/n);
+		}
+	}
+
+	/**
+	 * @return the move to play in {@code g}, after spending the budget on searching it
+	 */
+	Move search(Game g)
+	{
+		if (g.isTerminal())
+			return null;
+
+		final Game start=new Game(g);
+		final Node root=new Node(null, -1, ' ', start);
+		final AtomicInteger done=new AtomicInteger();
+		final long deadline=(millis>0)?System.currentTimeMillis()+millis:Long.MAX_VALUE;
+
+		Runnable worker=new Runnable() {
+			public void run() {
+				Game game=new Game(start);
+				while ((iterations==0 || done.getAndIncrement()<iterations) && System.currentTimeMillis()<deadline)
+					iterate(root, game);
+			}
+		};
+
+		List<Future<?>> futures=new ArrayList<Future<?>>();
+		for (int i=1; i<threads; i++)
+			futures.add(EXECUTOR.submit(worker));
+		worker.run();
+		for (Future<?> f: futures)
+		{
+			try
+			{
+				f.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		//the most tried move
+		Node best=null;
+		int playouts=0;
+		synchronized (root)
+		{
+			for (Node child: root.children)
+				if (best==null || child.visits>best.visits)
+					best=child;
+			playouts=root.visits;
+		}
+		lastIterations=playouts;
+
+		//with too small a budget to expand the root, any move will do
+		int cell=(best==null)?Long.numberOfTrailingZeros(start.emptyCells()):best.cell;
+		return g.moveAt(g.whoseTurn.getName(), cell);
+	}
+
+	/**
+	 * One iteration: selection, expansion, playout and backup. {@code game} is at the root when it starts, and is left
+	 * there when it ends.
+	 */
+	private void iterate(Node root, Game game)
+	{
+		int depth=0;
+		Node node=root;
+
+		//walk down, adding a virtual loss to each node on the way, until a node is added or the game ends
+		while (true)
+		{
+			Node next=null;
+			boolean added=false;
+			synchronized (node)
+			{
+				node.virtualLosses++;
+				if (node.terminal)
+					break;
+
+				if (node.untried!=0)
+				{
+					int cell=OpponentTables.randomCell(node.untried);
+					node.untried&=~(1L<<cell);
+					char mover=game.whoseTurn.getName();
+					game.makeMove(cell);
+					depth++;
+					next=new Node(node, cell, mover, game);
+					node.children.add(next);
+					added=true;
+				}
+				else
+				{
+					double logParent=Math.log(node.visits+node.virtualLosses);
+					double bestUcb=Double.NEGATIVE_INFINITY;
+					for (Node child: node.children)
+					{
+						double u=child.ucb(logParent, exploration);
+						if (u>bestUcb)
+						{
+							bestUcb=u;
+							next=child;
+						}
+					}
+				}
+			}
+
+			if (added)
+			{
+				synchronized (next)
+				{
+					next.virtualLosses++;
+				}
+				node=next;
+				break;
+			}
+
+			game.makeMove(next.cell);
+			depth++;
+			node=next;
+		}
+
+		//play out at random
+		while (!game.isTerminal())
+		{
+			game.makeMove(OpponentTables.randomCell(game.emptyCells()));
+			depth++;
+		}
+		int result=game.getState();
+
+		for (; depth>0; depth--)
+			game.unmakeMove();
+
+		//count the result in every node on the way, taking the virtual losses off
+		for (Node n=node; n!=null; n=n.parent)
+			synchronized (n)
+			{
+				n.virtualLosses--;
+				n.visits++;
+				if (result==Game.DRAW)
+					n.wins+=0.5;
+				else if ((result==Game.X_WON)==(n.mover=='X'))
+					n.wins+=1;
+			}
+	}
+
+	/**
+	 * @return the number of iterations done for the last move
+	 */
+	public int getLastIterations()
+	{
+		return lastIterations;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method to play the agent against a human agent.
+		MCTSAgent agent=new MCTSAgent();
+		HumanAgent d=new HumanAgent();
+		Game g=new Game(agent, d, d);
+		g.playOut();
+	}
+
+}
@@ -0,0 +1,206 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * An agent that plays perfectly against any opponent, not just the random one the {@link TTTMDP} assumes: it solves
+ * the 3x3 game by negamax search with alpha-beta pruning. Positions are scored from the point of view of the side to
+ * move: 0 for a draw, and for a win one more than the number of empty cells left when it happens, so that quicker wins
+ * (and slower losses) are preferred.
+ *
+ * Searched positions go into a transposition table indexed by {@link Game#hashCode()}, or, if the agent is symmetric,
+ * by the code of the canonical board (see {@link Game#canonical()}) so that the 8 symmetric versions of a position
+ * share an entry. The table also gives the move to try first, before the centre, the corners and then the edges.
+ *
+ * The constructor searches every position that can come up, whoever starts, and keeps its best move, so the agent
+ * plays either side and {@link #getMove} is a table lookup.
+ *
+ */
+public class MinimaxAgent extends Agent {
+
+	/**
+	 * what the score in a table entry is: the exact value, or a lower or upper bound on it
+	 */
+	static final byte EXACT=1;
+	static final byte LOWER=2;
+	static final byte UPPER=3;
+
+	/**
+	 * the cells in the order they are tried: centre, corners, edges
+	 */
+	static final int[] ORDER={4, 0, 2, 6, 8, 1, 3, 5, 7};
+
+	/**
+	 * If true, symmetric positions share a transposition table entry.
+	 */
+	final boolean symmetric;
+
+	/**
+	 * The transposition table: for each key (see {@link #key}), what its score is (0 if there is no entry), the score,
+	 * and the best move found (as a cell, in the key's frame).
+	 */
+	private final byte[] flag=new byte[StateCatalogue.HASHES];
+	private final byte[] score=new byte[StateCatalogue.HASHES];
+	private final byte[] move=new byte[StateCatalogue.HASHES];
+
+	/**
+	 * the best cell to play in every non-terminal game, indexed by {@link Game#hashCode()}, -1 elsewhere
+	 */
+	private final byte[] best=new byte[StateCatalogue.HASHES];
+
+	/**
+	 * the number of positions searched
+	 */
+	long nodes=0;
+
+	/**
+	 * Solves the game with a symmetry-aware transposition table
+	 */
+	public MinimaxAgent()
+	{
+		this(true);
+	}
+
+	/**
+	 * @param symmetric if true, symmetric positions share a transposition table entry
+	 */
+	public MinimaxAgent(boolean symmetric)
+	{
+		this.symmetric=symmetric;
+		Arrays.fill(best, (byte) -1);
+
+		Iterator<Game> games=Stream.concat(Game.reachableGames('X'), Game.reachableGames('O')).iterator();
+		while (games.hasNext())
+		{
+			Game g=games.next();
+			if (g.isTerminal() || best[g.hashCode()]>=0)
+				continue;
+
+			//a full window gives the exact score, and so a best move
+			negamax(g, -Byte.MAX_VALUE, Byte.MAX_VALUE);
+			int k=key(g);
+			best[g.hashCode()]=(byte) (symmetric?Symmetry.INVERSE[g.canonicalTransform()][move[k]]:move[k]);
+		}
+
+		super.policy=new Policy() {
+			public Move getMove(Game g) {
+				checkClassic(g);
+				int cell=best[g.hashCode()];
+				return cell<0?null:Move.of(g.whoseTurn.getName(), cell/3, cell%3);
+			}
+		};
+	}
+
+	/**
+	 * @return the score of {@code g} for the side to move if it's within alpha and beta; otherwise a bound on it: at
+	 * most alpha, or at least beta
+	 */
+	private int negamax(Game g, int alpha, int beta)
+	{
+		nodes++;
+		if (g.isTerminal())
+			//if someone has won, it was whoever just moved
+			return g.getState()==Game.DRAW?0:-(Long.bitCount(g.emptyCells())+1);
+
+		int k=key(g);
+		int t=symmetric?g.canonicalTransform():0;
+		int first=-1;
+		if (flag[k]!=0)
+		{
+			int s=score[k];
+			if (flag[k]==EXACT)
+				return s;
+			if (flag[k]==LOWER)
+				alpha=Math.max(alpha, s);
+			else
+				beta=Math.min(beta, s);
+			if (alpha>=beta)
+				return s;
+			first=Symmetry.INVERSE[t][move[k]];
+		}
+
+		int alpha0=alpha;
+		int bestScore=Integer.MIN_VALUE;
+		int bestCell=-1;
+		long empty=g.emptyCells();
+		for (int i=-1; i<ORDER.length && alpha<beta; i++)
+		{
+			//the table's move first, then the rest in order
+			int cell=(i<0)?first:ORDER[i];
+			if (cell<0 || (empty & 1L<<cell)==0 || (i>=0 && cell==first))
+				continue;
+
+			g.makeMove(cell);
+			int s=-negamax(g, -beta, -alpha);
+			g.unmakeMove();
+
+			if (s>bestScore)
+			{
+				bestScore=s;
+				bestCell=cell;
+			}
+			alpha=Math.max(alpha, s);
+		}
+
+		if (bestScore<=alpha0)
+			flag[k]=UPPER;
+		else if (bestScore>=beta)
+			flag[k]=LOWER;
+		else
+			flag[k]=EXACT;
+		score[k]=(byte) bestScore;
+		move[k]=(byte) (symmetric?Symmetry.CELL[t][bestCell]:bestCell);
+		return bestScore;
+	}
+
+	/**
+	 * @return the transposition table index of {@code g}
+	 */
+	private int key(Game g)
+	{
+		if (!symmetric)
+			return g.hashCode();
+
+		return Symmetry.canonicalCode(g.boardCode)*3+g.hashCode()%3;
+	}
+
+	/**
+	 * @param g a game that isn't over
+	 * @return the score of {@code g} for the side to move, with perfect play from both sides
+	 */
+	public int getScore(Game g)
+	{
+		checkClassic(g);
+		return negamax(new Game(g), -Byte.MAX_VALUE, Byte.MAX_VALUE);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if {@code g} isn't on the 3x3 board, the only one the tables cover
+	 */
+	private static void checkClassic(Game g)
+	{
+		if (!g.shape.isClassic())
+			throw new IllegalArgumentException("The minimax agent only plays the 3x3 board, not "+g.shape);
+	}
+
+	/**
+	 * @return the number of positions searched so far
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method to play the agent against a human agent.
+		MinimaxAgent agent=new MinimaxAgent();
+		HumanAgent d=new HumanAgent();
+		Game g=new Game(agent, d, d);
+		g.playOut();
+	}
+
+}
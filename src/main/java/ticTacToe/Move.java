@@ -2,53 +2,116 @@ package ticTacToe;
 
 /**
  * A move in the Tic-Tac-Toe game. If the game is modelled as an MDP, a Move is essentially an MDP Action.
+ *
+ * There are only a few different moves (X or O in one of at most {@link Move#MAX_DIM}x{@link Move#MAX_DIM} cells), 
+ * and {@link Move#of} hands out one shared instance for each of them. These are what {@link Game} and the policies use, 
+ * so generating moves allocates nothing.
+ * Moves are immutable, and two moves are equal if they have the same {@link Move#id}, however they were created.
  * @author ae187
  *
  */
 public class Move {
-	
+
+	/**
+	 * can be either 'X', or 'O'
+	 */
+	public final Agent who;
+	public final int x;
+	public final int y;
+
 	/**
-	 * can be either 'X', or 'O' 
+	 * The largest number of rows or columns a board can have
 	 */
-	public Agent who;
-	public int x;
-	public int y;
+	public static final int MAX_DIM=8;
 	
+	/**
+	 * A small integer identifying this move: 0-63 are X's moves and 64-127 O's, by x*MAX_DIM+y.
+	 */
+	final int id;
+
+	/**
+	 * The players the shared moves are made by. These only carry a name.
+	 */
+	private static final Agent[] PLAYERS=new Agent[2];
+
+	private static final Move[] MOVES=new Move[2*MAX_DIM*MAX_DIM];
+
+	static
+	{
+		PLAYERS[0]=new Agent();
+		PLAYERS[0].setName('X');
+		PLAYERS[1]=new Agent();
+		PLAYERS[1].setName('O');
+
+		for(int side=0;side<2;side++)
+			for(int x=0;x<MAX_DIM;x++)
+				for(int y=0;y<MAX_DIM;y++)
+				{
+					Move m=new Move(PLAYERS[side], x, y);
+					MOVES[m.id]=m;
+				}
+	}
+
 	public Move(char who, int x, int y)
 	{
-		if (who!='X' && who!='O')
-			throw new IllegalArgumentException("Can only be a move by X or by O");
-		
-		this.who=new Agent();
-		this.who.setName(who);
-		
-		if (x<0 || x>2 || y<0 || y>2)
-			throw new IllegalArgumentException("Invalid x or y coordinates");
-		this.x=x;
-		this.y=y;
-		
+		this(player(who), x, y);
+
 	}
-	
+
 	public Move(Agent who, int x, int y)
 	{
 		if (who.getName()!='X' && who.getName()!='O')
 			throw new IllegalArgumentException("Can only be a move by X or by O");
-		
+
 		this.who=who;
-		
-		if (x<0 || x>2 || y<0 || y>2)
+
+		if (x<0 || x>=MAX_DIM || y<0 || y>=MAX_DIM)
 			throw new IllegalArgumentException("Invalid x or y coordinates");
 		this.x=x;
 		this.y=y;
-		
+		this.id=(who.getName()=='X'?0:MAX_DIM*MAX_DIM)+x*MAX_DIM+y;
+
 	}
-	
+
 	public Move(int x, int y)
 	{
 		this('X', x, y);
-	
+
 	}
-	
+
+	/**
+	 * @param who 'X' or 'O'
+	 * @param x
+	 * @param y
+	 * @return the shared instance of this move
+	 */
+	public static Move of(char who, int x, int y)
+	{
+		if (x<0 || x>=MAX_DIM || y<0 || y>=MAX_DIM)
+			throw new IllegalArgumentException("Invalid x or y coordinates");
+
+		if (who=='X')
+			return MOVES[x*MAX_DIM+y];
+		else if (who=='O')
+			return MOVES[MAX_DIM*MAX_DIM+x*MAX_DIM+y];
+
+		throw new IllegalArgumentException("Can only be a move by X or by O");
+	}
+
+	/**
+	 * @param who 'X' or 'O'
+	 * @return the shared agent standing for that player in the shared moves
+	 */
+	static Agent player(char who)
+	{
+		if (who=='X')
+			return PLAYERS[0];
+		else if (who=='O')
+			return PLAYERS[1];
+
+		throw new IllegalArgumentException("Can only be a move by X or by O");
+	}
+
 	public String toString()
 	{
 		return who+"("+x+","+y+")";
@@ -56,12 +119,7 @@ public class Move {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((who == null) ? 0 : who.getName());
-		result = prime * result + x;
-		result = prime * result + y;
-		return result;
+		return id;
 	}
 
 	@Override
@@ -72,21 +130,12 @@ public class Move {
 			return false;
 		if (getClass() != obj.getClass())
 			return false;
-		Move other = (Move) obj;
-		if (this.who.getName()!=other.who.getName())
-			return false;
-		
-		if (x != other.x)
-			return false;
-		
-		if (y != other.y)
-			return false;
-		
-		return true;
+
+		return id == ((Move) obj).id;
 	}
-	
-	
-	
-	
+
+
+
+
 
 }
@@ -0,0 +1,61 @@
+package ticTacToe;
+
+/**
+ * How the opponent replies, as far as the {@link TTTMDP} is concerned: for a game where it is the opponent's turn,
+ * the probability of each of its possible moves. The MDP assumes the {@link #RANDOM} opponent unless it is given
+ * another model, and planning agents solved against a model play best against an opponent that really behaves
+ * like it.
+ *
+ * Models should only depend on whose turn it is, not on whether that is X or O, so that a policy solved for X can also
+ * play O (see {@link Policy#mirrored}). The built-in models are exact models of {@link RandomPolicy},
+ * {@link AggressivePolicy} and {@link DefensivePolicy}.
+ */
+public interface OpponentModel {
+
+	/**
+	 * @param g a game that isn't over, where it's the opponent's turn
+	 * @return the probability of the opponent playing in each cell (x*cols+y) of the board, 0 for cells it never
+	 *         plays in
+	 */
+	double[] replies(Game g);
+
+	/**
+	 * @return true if the model treats symmetric games (see {@link Game#canonical()}) alike, so that the MDP can be
+	 *         solved over canonical games only
+	 */
+	boolean isSymmetric();
+
+	/**
+	 * the opponent of {@link RandomPolicy}: every empty cell equally likely
+	 */
+	OpponentModel RANDOM = new UniformOpponentModel("random", true) {
+		long cells(Game g) {
+			return g.emptyCells();
+		}
+	};
+
+	/**
+	 * the opponent of {@link AggressivePolicy}: its lowest winning cell if it has one, otherwise every empty cell
+	 * equally likely
+	 */
+	OpponentModel AGGRESSIVE = new UniformOpponentModel("aggressive", false) {
+		long cells(Game g) {
+			char me = g.whoseTurn.getName();
+			long winning = AggressivePolicy.winningCells(g, me, (me == 'X') ? g.xBits : g.oBits);
+			return (winning != 0) ? Long.lowestOneBit(winning) : g.emptyCells();
+		}
+	};
+
+	/**
+	 * the opponent of {@link DefensivePolicy}: the lowest cell in which the other side would win if there is one,
+	 * otherwise every empty cell equally likely
+	 */
+	OpponentModel DEFENSIVE = new UniformOpponentModel("defensive", false) {
+		long cells(Game g) {
+			char other = (g.whoseTurn.getName() == 'X') ? 'O' : 'X';
+			long threats = AggressivePolicy.winningCells(g, other, (other == 'X') ? g.xBits : g.oBits);
+			return (threats != 0) ? Long.lowestOneBit(threats) : g.emptyCells();
+		}
+	};
+
+}
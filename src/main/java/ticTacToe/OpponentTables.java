@@ -0,0 +1,63 @@
+package ticTacToe;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decision tables for the built-in opponents ({@link AggressivePolicy} and {@link DefensivePolicy}) on the 3x3
+ * board, indexed by {@link Game#boardCode}. With these, choosing a move is a couple of array reads: no games are
+ * cloned or evaluated, and nothing is allocated. {@link #randomCell} picks the random moves of all three opponents.
+ *
+ * Cell sets are 9 bit masks, cell (x,y) being bit x*3+y as in {@link Game#xBits}.
+ */
+final class OpponentTables {
+
+	private static class Holder {
+		/**
+		 * WINNING[side][boardCode] holds the empty cells in which X (side 0) or O (side 1) would complete a line
+		 */
+		static final short[][] WINNING = new short[2][19683];
+
+		static {
+			for (int code = 0; code < 19683; code++) {
+				int xBits = 0;
+				int oBits = 0;
+				int c = code;
+				for (int cell = 8; cell >= 0; cell--, c /= 3) {
+					if (c % 3 == 1)
+						xBits |= 1 << cell;
+					else if (c % 3 == 2)
+						oBits |= 1 << cell;
+				}
+
+				int empty = ~(xBits | oBits) & Game.FULL;
+				for (int e = empty; e != 0; e &= e - 1) {
+					int cell = 1 << Integer.numberOfTrailingZeros(e);
+					if (Game.hasLine(xBits | cell))
+						WINNING[0][code] |= cell;
+					if (Game.hasLine(oBits | cell))
+						WINNING[1][code] |= cell;
+				}
+			}
+		}
+	}
+
+	private OpponentTables() {
+	}
+
+	/**
+	 * @param who 'X' or 'O'
+	 * @return the empty cells of the board {@code boardCode} in which {@code who} would complete a line
+	 */
+	static int winning(char who, int boardCode) {
+		return Holder.WINNING[who == 'X' ? 0 : 1][boardCode];
+	}
+
+	/**
+	 * @param cells a non-empty set of cells
+	 * @return one of {@code cells}, picked uniformly at random
+	 */
+	static int randomCell(long cells) {
+		return Game.nthCell(cells, ThreadLocalRandom.current().nextInt(Long.bitCount(cells)));
+	}
+
+}
@@ -15,6 +15,19 @@ public class Policy {
 	 */
 	HashMap<Game, Move> policy=new HashMap<Game, Move>();
 	
+	/**
+	 * If true, {@link Policy#policy} only holds canonical games (see {@link Game#canonical()}), and other games are 
+	 * looked up through their canonical form.
+	 */
+	boolean canonical=false;
+	
+	/**
+	 * If true, {@link Policy#policy} only holds games where it's X's turn, and in games where it's O's turn O plays 
+	 * what X would play with the sides swapped (see {@link Game#swapSides()}). The MDP is the same from either side, 
+	 * so a policy solved for X plays O just as well.
+	 */
+	boolean mirrored=false;
+	
 	/**
 	 * Create policy according to this map
 	 * @param policy
@@ -23,6 +36,29 @@ public class Policy {
 		this.policy=policy;
 	}
 	
+	/**
+	 * Create policy according to this map, which should be keyed on canonical games if {@code canonical} is true.
+	 * @param policy
+	 * @param canonical
+	 */
+	public Policy(HashMap<Game, Move> policy, boolean canonical) {
+		this.policy=policy;
+		this.canonical=canonical;
+	}
+	
+	/**
+	 * Create policy according to this map, which should only hold games where it's X's turn if {@code mirrored} is 
+	 * true (see {@link Policy#mirrored}).
+	 * @param policy
+	 * @param canonical
+	 * @param mirrored
+	 */
+	public Policy(HashMap<Game, Move> policy, boolean canonical, boolean mirrored) {
+		this.policy=policy;
+		this.canonical=canonical;
+		this.mirrored=mirrored;
+	}
+	
 	public Policy()
 	{}
 	
@@ -35,12 +71,28 @@ public class Policy {
 	 */
 	public Move getMove(Game g) {
 		
+		if (mirrored && g.whoseTurn==g.o)
+		{
+			Move m=lookUp(g.swapSides());
+			return m==null?null:Game.swapSides(m);
+		}
+		
+		return lookUp(g);
+	}
+	
+	private Move lookUp(Game g) {
+		
+		if (canonical)
+		{
+			int t=g.canonicalTransform();
+			Move m=policy.get(g.transform(t));
+			return m==null?null:Game.inverseTransformMove(m, t);
+		}
+		
 		if (policy.containsKey(g))
 			return policy.get(g);
 		
 		return null;
-		
-		
 	}
 	
 	/**
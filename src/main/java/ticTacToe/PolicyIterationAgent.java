@@ -2,12 +2,14 @@ package ticTacToe;
 
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 /**
  * A policy iteration agent. You should implement the following methods:
  * (1) {@link PolicyIterationAgent#evaluatePolicy}: this is the policy evaluation step from your lectures
@@ -37,6 +39,169 @@ public class PolicyIterationAgent extends Agent {
 	
 	double discount=0.9;
 	
+	/**
+	 * If true, only canonical games (see {@link Game#canonical()}) are stored in {@link #policyValues} and {@link #curPolicy}. 
+	 * Successor games are looked up through their canonical form.
+	 */
+	boolean canonical=false;
+	
+	/**
+	 * The ways {@link #train} can solve the MDP
+	 */
+	public enum Engine
+	{
+		/**
+		 * {@link #evaluatePolicy} and {@link #improvePolicy}, on maps of {@link Game}s
+		 */
+		MAPS,
+		/**
+		 * {@link DensePolicyIteration}, on the compiled MDP (see {@link TTTMDP#compile()}), starting from the policy 
+		 * that plays the first possible move everywhere
+		 */
+		DENSE,
+		/**
+		 * {@link SparsePolicyIteration}, on the policy's MDP assembled as a sparse matrix, from the same first policy
+		 */
+		SPARSE
+	}
+	
+	/**
+	 * The settings of a {@link PolicyIterationAgent}, each set by name so that they can't be mixed up, e.g. 
+	 * {@code new PolicyIterationAgent(new PolicyIterationAgent.Options().engine(Engine.SPARSE).parallelism(4))}. 
+	 * Settings that aren't set keep the defaults of the agent's fields.
+	 */
+	public static class Options
+	{
+		double discount=0.9;
+		boolean canonical=false;
+		Engine engine=Engine.MAPS;
+		int maxEvaluationSweeps=Integer.MAX_VALUE;
+		int parallelism=1;
+		boolean exactEvaluation=false;
+		OpponentModel opponent=OpponentModel.RANDOM;
+		
+		public Options discount(double discount)
+		{
+			this.discount=discount;
+			return this;
+		}
+		
+		/**
+		 * see {@link PolicyIterationAgent#canonical}
+		 */
+		public Options canonical(boolean canonical)
+		{
+			this.canonical=canonical;
+			return this;
+		}
+		
+		public Options engine(Engine engine)
+		{
+			if (engine==null)
+				throw new IllegalArgumentException("The engine can't be null");
+			this.engine=engine;
+			return this;
+		}
+		
+		/**
+		 * see {@link PolicyIterationAgent#maxEvaluationSweeps}
+		 */
+		public Options maxEvaluationSweeps(int maxEvaluationSweeps)
+		{
+			if (maxEvaluationSweeps<1)
+				throw new IllegalArgumentException("maxEvaluationSweeps should be at least 1");
+			this.maxEvaluationSweeps=maxEvaluationSweeps;
+			return this;
+		}
+		
+		/**
+		 * see {@link PolicyIterationAgent#parallelism}; the dense and sparse engines only
+		 */
+		public Options parallelism(int parallelism)
+		{
+			if (parallelism<1)
+				throw new IllegalArgumentException("parallelism should be at least 1");
+			this.parallelism=parallelism;
+			return this;
+		}
+		
+		/**
+		 * see {@link PolicyIterationAgent#exactEvaluation}; the sparse engine only
+		 */
+		public Options exactEvaluation(boolean exactEvaluation)
+		{
+			this.exactEvaluation=exactEvaluation;
+			return this;
+		}
+		
+		public Options opponent(OpponentModel opponent)
+		{
+			this.opponent=opponent;
+			return this;
+		}
+	}
+	
+	/**
+	 * how {@link #train} solves the MDP
+	 */
+	Engine engine=Engine.MAPS;
+	
+	/**
+	 * The most sweeps a single policy evaluation does. If the values haven't converged by then, the policy is improved 
+	 * anyway (modified policy iteration), and evaluation carries on from these values in the next round.
+	 */
+	int maxEvaluationSweeps=Integer.MAX_VALUE;
+	
+	/**
+	 * The number of threads the dense and sparse engines evaluate and improve the policy with. The policy is the 
+	 * same whatever this is set to.
+	 */
+	int parallelism=1;
+	
+	/**
+	 * If true, the sparse engine evaluates each policy exactly, in one pass of back substitution, instead of with 
+	 * matrix-vector products until its values converge.
+	 */
+	boolean exactEvaluation=false;
+	
+	/**
+	 * the number of policy evaluation sweeps done in training
+	 */
+	int evaluationSweeps=0;
+	
+	/**
+	 * the number of policy improvement steps done in training, the number of state values computed in evaluation, 
+	 * and the number of Q-values computed in improvement
+	 */
+	int improvements=0;
+	long evaluationBackups=0;
+	long improvementBackups=0;
+	
+	/**
+	 * the number of rows of the sparse matrix rewritten because their state's action changed, see 
+	 * {@link SparsePolicyIteration}
+	 */
+	long rowsPatched=0;
+	
+	/**
+	 * The states the next {@link #improvePolicy} looks at, null for all of them. A state's best move can only change if 
+	 * the value of one of its successors changed, so after the first step only the predecessors of states whose value 
+	 * changed (see {@link #predecessors}) are looked at again.
+	 */
+	Set<Game> toImprove=null;
+	
+	/**
+	 * The states the next {@link #evaluatePolicy} sweep updates, null for all of them. A state's value can only change 
+	 * if its move or the value of one of its successors changed, so after the first sweep only the states whose move 
+	 * changed, and the predecessors of states whose value changed, are updated again.
+	 */
+	Set<Game> toEvaluate=null;
+	
+	/**
+	 * the states each state is reached from, by any move, filled in by the first {@link #evaluatePolicy}
+	 */
+	Map<Game, List<Game>> predecessors=null;
+	
 	/**
 	 * The mdp model used, see {@link TTTMDP}
 	 */
@@ -78,6 +243,59 @@ public class PolicyIterationAgent extends Agent {
 		initRandomPolicy();
 		train();
 	}
+	/**
+	 * Use this constructor to solve the MDP against an opponent that replies as {@code opponent} says, e.g. 
+	 * {@link OpponentModel#AGGRESSIVE} to play best against the {@link AggressiveAgent}.
+	 * @param discountFactor
+	 * @param opponent
+	 */
+	public PolicyIterationAgent(double discountFactor, OpponentModel opponent) {
+		
+		this.discount=discountFactor;
+		this.mdp=new TTTMDP(opponent);
+		initValues();
+		initRandomPolicy();
+		train();
+	}
+	/**
+	 * Use this constructor to solve the MDP over canonical games only, if {@code canonical} is true.
+	 * @param discountFactor
+	 * @param canonical
+	 */
+	public PolicyIterationAgent(double discountFactor, boolean canonical) {
+		
+		this.discount=discountFactor;
+		this.canonical=canonical;
+		this.mdp=new TTTMDP();
+		initValues();
+		initRandomPolicy();
+		train();
+	}
+	/**
+	 * Use this constructor to choose how the MDP is solved, see {@link Options}.
+	 * @param options
+	 */
+	public PolicyIterationAgent(Options options) {
+		
+		if (options.parallelism>1 && options.engine==Engine.MAPS)
+			throw new IllegalArgumentException("Only the dense and sparse engines run in parallel");
+		if (options.exactEvaluation && options.engine!=Engine.SPARSE)
+			throw new IllegalArgumentException("Only the sparse engine evaluates policies exactly");
+		
+		this.discount=options.discount;
+		this.canonical=options.canonical;
+		this.engine=options.engine;
+		this.maxEvaluationSweeps=options.maxEvaluationSweeps;
+		this.parallelism=options.parallelism;
+		this.exactEvaluation=options.exactEvaluation;
+		this.mdp=new TTTMDP(options.opponent);
+		if (engine==Engine.MAPS)
+		{
+			initValues();
+			initRandomPolicy();
+		}
+		train();
+	}
 	/**
 	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP
 	 * @param discountFactor
@@ -96,14 +314,15 @@ public class PolicyIterationAgent extends Agent {
 	}
 	/**
 	 * Initializes the {@link #policyValues} map, and sets the initial value of all states to 0 
-	 * (V0 under some policy pi ({@link #curPolicy} from the lectures). Uses {@link Game#inverseHash} and {@link Game#generateAllValidGames(char)} to do this. 
+	 * (V0 under some policy pi ({@link #curPolicy} from the lectures). Uses {@link Game#generateReachableGames(char)} to do this. 
 	 * 
 	 */
 	public void initValues()
 	{
-		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
+		List<Game> allGames=Game.generateReachableGames('X');//all games that can come up where it is X's turn, or it's terminal.
 		for(Game g: allGames)
-			this.policyValues.put(g, 0.0);
+			if (!canonical || g.isCanonical())
+				this.policyValues.put(g, 0.0);
 		
 	}
 	
@@ -147,67 +366,82 @@ public class PolicyIterationAgent extends Agent {
 	
 	/**
 	 * Performs policy evaluation steps until the maximum change in values is less than {@code delta}, in other words
-	 * until the values under the current policy converge. After running this method, 
+	 * until the values under the current policy converge, or until {@link #maxEvaluationSweeps} steps have been done. 
+	 * After running this method, 
 	 * the {@link PolicyIterationAgent#policyValues} map should contain the values of each reachable state under the current policy. 
 	 * You should use the {@link TTTMDP} {@link PolicyIterationAgent#mdp} provided to do this.
 	 *
 	 * @param delta
+	 * @return true if the values converged
 	 */
-	protected void evaluatePolicy(double delta)
+	protected boolean evaluatePolicy(double delta)
 	{
 		
 		/* YOUR CODE HERE */
 		
-		//list to store change in values of states/games
-		List<Double> valChange = new ArrayList<Double>();
-		
 		//list to store transitions of each move
 		List<TransitionProb> tp = new ArrayList<TransitionProb>();
 		double max_val_change = 1;
 		
+		if (predecessors==null)
+			predecessors=findPredecessors();
+		
 		// perform policy evaluation steps until maximum change in values is greater than delta
-		while (max_val_change > delta) {
-			valChange.clear();
+		for (int sweep=0; max_val_change > delta; sweep++) {
+			if (sweep==maxEvaluationSweeps)
+				return false;
+			
+			evaluationSweeps++;
+			max_val_change=0;
+			
+			//states changed in this sweep go on a fresh set for the next
+			Set<Game> states=(toEvaluate==null)?policyValues.keySet():toEvaluate;
+			toEvaluate=new HashSet<Game>();
 			
 			//iterating through each game
-			for (Map.Entry<Game, Double> game : policyValues.entrySet()) {
+			for (Game game : states) {
 				
-				if(game.getKey().isTerminal()) {
-					policyValues.replace(game.getKey(), 0.0);
+				if(game.isTerminal()) {
+					policyValues.replace(game, 0.0);
 					continue;
 				}
 				
 				//get move of the game from current policy
-				Move m = curPolicy.get(game.getKey());
+				Move m = curPolicy.get(game);
 				
 				tp.clear();
 				
 				//get possible transitions of move
-				tp = mdp.generateTransitions(game.getKey(), m);
+				tp = mdp.generateTransitions(game, m);
 				
 				double val=0;
 				double valdifference = 0;
 				for (TransitionProb t_item : tp) {
-					val+= t_item.prob * (t_item.outcome.localReward + discount * policyValues.get(t_item.outcome.sPrime));
+					val+= t_item.prob * (t_item.outcome.localReward + discount * valueOf(t_item.outcome.sPrime));
 				}
 				
 				//calculate the difference in values of game state
-				valdifference = Math.abs(val - policyValues.get(game.getKey())) ;
+				valdifference = Math.abs(val - policyValues.get(game)) ;
 				
-				//adding the difference to the list
-				valChange.add(valdifference);
+				//keeping the largest difference
+				max_val_change = Math.max(max_val_change, valdifference);
+				
+				//the values and moves of the states leading here need looking at again
+				if (valdifference!=0)
+				{
+					toEvaluate.addAll(predecessors.get(game));
+					if (toImprove!=null)
+						toImprove.addAll(predecessors.get(game));
+				}
 				
 				//update game state value
-				policyValues.replace(game.getKey(), val);
+				policyValues.replace(game, val);
+				evaluationBackups++;
 			}
-			
-			
-			max_val_change = Collections.max(valChange);
-			
 		    
 		}
 
-		
+		return true;
 	}
 		
 	
@@ -224,42 +458,37 @@ public class PolicyIterationAgent extends Agent {
 		/* YOUR CODE HERE */
 		
 		List<TransitionProb> tp1 = new ArrayList<TransitionProb>();
-		HashMap<Game, Move> oldPolicy=new HashMap<Game, Move>();
 		Map<Move, Double> maxValue_move = new HashMap<Move, Double>();
 		
-		//copying current policy to old policy
-		for(Map.Entry<Game, Move> g : curPolicy.entrySet()) {
-			if(oldPolicy.containsKey(g.getKey())) {
-				oldPolicy.replace(g.getKey(), g.getValue());
-			}
-			else {
-				oldPolicy.put(g.getKey(), g.getValue());
-			}
-			
-		}
-		
+		//the number of states whose move changed
+		int changed=0;
+		improvements++;
 		
+		//the first step looks at every state
+		Set<Game> states=(toImprove==null)?policyValues.keySet():toImprove;
+		toImprove=new HashSet<Game>();
 		
 		//iterating through each game
-		for (Map.Entry<Game, Double> item : policyValues.entrySet()) {
+		for (Game game : states) {
 			
 			//getting all possible moves of game
-			List<Move> allMoves = item.getKey().getPossibleMoves();
+			List<Move> allMoves = game.getPossibleMoves();
 			maxValue_move.clear();
 			
 			//calculating Q values
 			for(Move m : allMoves) {
 				
 				tp1.clear();
-				tp1 = mdp.generateTransitions(item.getKey(), m);
+				tp1 = mdp.generateTransitions(game, m);
 				
 				double val=0;
 				for (TransitionProb t_item : tp1) {
 
 					//calculate q values
 					//QValue = Transition (Reward + Discount*Value_of_destination_state)
-					val += t_item.prob * ( t_item.outcome.localReward + discount*policyValues.get(t_item.outcome.sPrime));	
+					val += t_item.prob * ( t_item.outcome.localReward + discount*valueOf(t_item.outcome.sPrime));
 				}
+				improvementBackups++;
 				
 				//adding Q values to a list
 				if(maxValue_move.containsKey(m)) {
@@ -284,18 +513,63 @@ public class PolicyIterationAgent extends Agent {
 				}
 			}
 			
-			//updating the policy
-			curPolicy.replace(item.getKey(), max_move);
+			//updating the policy, and its value needs working out again
+			if (max_move!=null && !max_move.equals(curPolicy.get(game))) {
+				curPolicy.replace(game, max_move);
+				if (toEvaluate!=null)
+					toEvaluate.add(game);
+				changed++;
+			}
 			
 			
 		}
 		
 		//checking if the policy changed
-		if(oldPolicy.equals(curPolicy)) {
-			return false;
-		}
+		return changed>0;
+	}
+	
+	/**
+	 * @return the states each state in {@link #policyValues} is reached from, by any move
+	 */
+	private Map<Game, List<Game>> findPredecessors()
+	{
+		Map<Game, List<Game>> predecessors=new HashMap<Game, List<Game>>();
+		for (Game g: policyValues.keySet())
+			predecessors.put(g, new ArrayList<Game>());
 		
-		return true;
+		for (Game game: policyValues.keySet())
+		{
+			if (game.isTerminal())
+				continue;
+			
+			for (Move m: game.getPossibleMoves())
+				for (TransitionProb t_item: mdp.generateTransitions(game, m))
+				{
+					//the transitions of a game come together, so it only needs checking against the last one
+					List<Game> from=predecessors.get(canonical?t_item.outcome.sPrime.canonical():t_item.outcome.sPrime);
+					if (from.isEmpty() || from.get(from.size()-1)!=game)
+						from.add(game);
+				}
+		}
+		return predecessors;
+	}
+	
+	/**
+	 * @param g
+	 * @return the value of {@code g} under the current policy, looked up through its canonical form if the agent is {@link #canonical}
+	 */
+	double valueOf(Game g)
+	{
+		return policyValues.get(canonical?g.canonical():g);
+	}
+	
+	/**
+	 * @param g a game reachable in play
+	 * @return the value of {@code g} under the agent's policy, once it is trained
+	 */
+	public double getValue(Game g)
+	{
+		return valueOf(g);
 	}
 	
 	/**
@@ -312,19 +586,100 @@ public class PolicyIterationAgent extends Agent {
 	{
 		/* YOUR CODE HERE */
 		
+		if (engine!=Engine.MAPS)
+		{
+			//the same steps, on arrays
+			ForkJoinPool pool=(parallelism>1)?new ForkJoinPool(parallelism):null;
+			try
+			{
+				DenseSolver solver;
+				if (engine==Engine.SPARSE)
+				{
+					SparsePolicyIteration spi=new SparsePolicyIteration(mdp.compile(canonical), discount, pool);
+					spi.solve(exactEvaluation, delta, maxEvaluationSweeps);
+					evaluationSweeps+=spi.evaluationSweeps;
+					improvements+=spi.improvements;
+					rowsPatched+=spi.rowsPatched;
+					solver=spi;
+				}
+				else
+				{
+					DensePolicyIteration dpi=new DensePolicyIteration(mdp.compile(canonical), discount, pool);
+					dpi.solve(delta, maxEvaluationSweeps);
+					evaluationSweeps+=dpi.evaluationSweeps;
+					improvements+=dpi.improvements;
+					evaluationBackups+=dpi.evaluationBackups;
+					improvementBackups+=dpi.improvementBackups;
+					solver=dpi;
+				}
+				this.policyValues=new HashMap<Game, Double>(solver.valueFunction());
+				super.policy=solver.extractPolicy();
+			}
+			finally
+			{
+				if (pool!=null)
+					pool.shutdown();
+			}
+			return;
+		}
+		
 		//running policy evaluation and improve policy functions until the policy converges
-		this.evaluatePolicy(delta);
+		boolean converged=this.evaluatePolicy(delta);
 		
-		while(this.improvePolicy()) {
+		//with a cap on the evaluation sweeps, the values may not have converged even if the policy didn't change
+		while(this.improvePolicy() || !converged) {
 			
-			 this.evaluatePolicy(delta);
+			 converged=this.evaluatePolicy(delta);
 		}
 		
-		Policy p = new Policy(this.curPolicy);
+		Policy p = new Policy(this.curPolicy, canonical, true);
 		super.policy = p;
 		
 	}
 	
+	/**
+	 * @return the number of policy evaluation sweeps done in training
+	 */
+	public int getEvaluationSweeps()
+	{
+		return evaluationSweeps;
+	}
+	
+	/**
+	 * @return the number of policy improvement steps done in training
+	 */
+	public int getImprovements()
+	{
+		return improvements;
+	}
+	
+	/**
+	 * @return the number of state values computed by policy evaluation in training. After the first sweep, only the 
+	 * values that may have changed are recomputed.
+	 */
+	public long getEvaluationBackups()
+	{
+		return evaluationBackups;
+	}
+	
+	/**
+	 * @return the number of Q-values computed by policy improvement in training. Only the states whose best move may 
+	 * have changed are looked at again.
+	 */
+	public long getImprovementBackups()
+	{
+		return improvementBackups;
+	}
+	
+	/**
+	 * @return the number of rows the sparse engine rewrote in training, one per state whose action changed. The 
+	 * matrix is only assembled in full once.
+	 */
+	public long getRowsPatched()
+	{
+		return rowsPatched;
+	}
+	
 	public static void main(String[] args) throws IllegalMoveException
 	{
 		/**
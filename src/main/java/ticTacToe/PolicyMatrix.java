@@ -0,0 +1,83 @@
+package ticTacToe;
+
+/**
+ * The MDP of a {@link CompiledMDP} under a fixed policy, as a sparse matrix: row s of P_pi holds the probabilities of
+ * going from state s to each other state when playing the policy's action, and R_pi[s] the expected reward of that
+ * action. Policy evaluation is then V = R_pi + discount * P_pi V.
+ *
+ * The matrix is kept in CSR form, but every row has room for the largest action of its state, so when the policy
+ * changes the action of a state only that row is rewritten ({@link #setRow}), in place. Rows are independent, so
+ * different rows can be read and rewritten from different threads at the same time.
+ *
+ * As every transition goes to a state with a higher index, P_pi is strictly upper triangular.
+ */
+final class PolicyMatrix {
+
+	final CompiledMDP mdp;
+	final TransitionGraph graph;
+
+	/**
+	 * the entries of row s are {@code col[rowStart[s]]} ... {@code col[rowEnd[s]-1]}, and the same in {@link #val}.
+	 * Its room goes up to {@code rowStart[s+1]}.
+	 */
+	final int[] rowStart;
+	final int[] rowEnd;
+	final int[] col;
+	final double[] val;
+
+	/**
+	 * R_pi, the expected reward of each row's action
+	 */
+	final double[] reward;
+
+	/**
+	 * @param policy the action played in each state, -1 in terminal states
+	 */
+	PolicyMatrix(CompiledMDP mdp, int[] policy) {
+		this.mdp = mdp;
+		this.graph = mdp.graph;
+		int n = graph.size();
+
+		rowStart = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			int room = 0;
+			for (int a = graph.actionStart[s]; a < graph.actionStart[s + 1]; a++)
+				room = Math.max(room, graph.transStart[a + 1] - graph.transStart[a]);
+			rowStart[s + 1] = rowStart[s] + room;
+		}
+		rowEnd = new int[n];
+		col = new int[rowStart[n]];
+		val = new double[rowStart[n]];
+		reward = new double[n];
+
+		for (int s = 0; s < n; s++)
+			setRow(s, policy[s]);
+	}
+
+	/**
+	 * Rewrites row {@code s} for action {@code a}, or as an empty row (a terminal state) if {@code a} is -1.
+	 */
+	void setRow(int s, int a) {
+		int k = rowStart[s];
+		double r = 0;
+		if (a >= 0)
+			for (int t = graph.transStart[a]; t < graph.transStart[a + 1]; t++, k++) {
+				col[k] = graph.next[t];
+				val[k] = graph.prob[t];
+				r += graph.prob[t] * mdp.reward[t];
+			}
+		rowEnd[s] = k;
+		reward[s] = r;
+	}
+
+	/**
+	 * @return row {@code s} of R_pi + discount * P_pi v
+	 */
+	double row(int s, double[] v, double discount) {
+		double sum = 0;
+		for (int k = rowStart[s]; k < rowEnd[s]; k++)
+			sum += val[k] * v[col[k]];
+		return reward[s] + discount * sum;
+	}
+
+}
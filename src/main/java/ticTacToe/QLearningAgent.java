@@ -66,8 +66,23 @@ public class QLearningAgent extends Agent {
 	 * @param numEpisodes The number of episodes (games) to train for
 	 */
 	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount)
+	{
+		this(opponent, learningRate, numEpisodes, discount, false);
+	}
+	
+	/**
+	 * As above, but if {@code canonical} is true the q-table is kept over canonical games (see {@link Game#canonical()}) 
+	 * so that experience in one position is shared with all positions symmetric to it.
+	 * @param opponent
+	 * @param learningRate
+	 * @param numEpisodes
+	 * @param discount
+	 * @param canonical
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount, boolean canonical)
 	{
 		env=new TTTEnvironment(opponent);
+		qTable=new QTable(canonical);
 		this.alpha=learningRate;
 		this.numEpisodes=numEpisodes;
 		this.discount=discount;
@@ -82,7 +97,7 @@ public class QLearningAgent extends Agent {
 	
 	protected void initQTable()
 	{
-		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
+		List<Game> allGames=Game.generateReachableGames('X');//all games that can come up where it is X's turn, or it's terminal.
 		for(Game g: allGames)
 		{
 			List<Move> moves=g.getPossibleMoves();
@@ -255,10 +270,13 @@ public class QLearningAgent extends Agent {
 		Map <Move, Double> max_value_list = new HashMap<Move, Double>();
 		
 		//generating all valid games
-		List<Game> allGames=Game.generateAllValidGames('X');
+		List<Game> allGames=Game.generateReachableGames('X');
 		
 		//iterating through each game
 		for(Game g: allGames){
+			if (qTable.canonical && !g.isCanonical())
+				continue;
+			
 			max_value_list.clear();
 			
 			//getting all possible moves
@@ -285,7 +303,7 @@ public class QLearningAgent extends Agent {
 			
 		}
 		
-		return new Policy(policy);
+		return new Policy(policy, qTable.canonical);
 		
 	}
 	
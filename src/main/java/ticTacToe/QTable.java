@@ -11,11 +11,22 @@ import java.util.HashMap;
 public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 
 	
+	/**
+	 * If true, every (game, move) pair is stored under its canonical form, so that symmetric positions share their q-values.
+	 */
+	boolean canonical=false;
+	
 	public QTable()
 	{
 		super();
 	}
 	
+	public QTable(boolean canonical)
+	{
+		super();
+		this.canonical=canonical;
+	}
+	
 	/**
 	 * 
 	 */
@@ -30,6 +41,13 @@ public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 	 */
 	public Double getQValue(Game g, Move m)
 	{
+		if (canonical)
+		{
+			int t=g.canonicalTransform();
+			g=g.transform(t);
+			m=canonicalMove(g, Game.transformMove(m, t));
+		}
+		
 		if (containsKey(g))
 		{
 			HashMap<Move,Double> moves=get(g);
@@ -48,12 +66,26 @@ public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 	 */
 	public void addQValue(Game g, Move m, Double v)
 	{
+		if (canonical)
+		{
+			int t=g.canonicalTransform();
+			g=g.transform(t);
+			m=canonicalMove(g, Game.transformMove(m, t));
+		}
+		
 		if (!containsKey(g))
 			this.put(g, new HashMap<Move,Double>());
 		
 		this.get(g).put(m, v);
 	}
 	
-	
+	/**
+	 * On a canonical game that is symmetric to itself several moves are equivalent. This picks one of them.
+	 */
+	private static Move canonicalMove(Game canonicalGame, Move m)
+	{
+		int cell=Symmetry.canonicalCell(canonicalGame.boardCode, m.x*3+m.y);
+		return Move.of(m.who.getName(), cell/3, cell%3);
+	}
 
 }
@@ -0,0 +1,341 @@
+package ticTacToe;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A Labeled Real-Time Dynamic Programming (LRTDP, Bonet and Geffner 2003) agent. Instead of backing up every state
+ * like the {@link ValueIterationAgent}, it runs trials from the start of the game: it follows its current greedy
+ * policy, with the opponent's replies sampled from the {@link TTTMDP}, and backs up only the states it visits.
+ * States whose values (and those of everything reachable from them under the greedy policy) have stopped changing
+ * are labeled solved, and trials stop there. Training is over once the start state is solved.
+ *
+ * Values start at an optimistic guess (see {@link RTDPAgent#heuristic}), so states that look bad are never explored
+ * further than needed to rule them out. Since it only ever looks at states that come up, it also works on boards
+ * larger than 3x3 (see {@link RTDPAgent#RTDPAgent(double, int, int, int)}). Games not solved in training (e.g. ones
+ * where O started) are solved when the agent is first asked for a move in them.
+ *
+ * Values are kept for X. Like the other MDP agents, it plays O with the sides swapped (see {@link Game#swapSides()}),
+ * which is the same MDP.
+ *
+ */
+public class RTDPAgent extends Agent {
+
+	/**
+	 * the values of the states backed up so far. Other (non-terminal) states have the value {@link RTDPAgent#heuristic}
+	 */
+	HashMap<Game, Double> valueFunction=new HashMap<Game, Double>();
+
+	/**
+	 * the states labeled solved
+	 */
+	HashSet<Game> solved=new HashSet<Game>();
+
+	/**
+	 * the discount factor (gamma)
+	 */
+	double discount=0.9;
+
+	/**
+	 * the MDP model
+	 */
+	TTTMDP mdp=new TTTMDP();
+
+	/**
+	 * a state is solved once the greedy backups of it and of everything it leads to change its value by less than this
+	 */
+	double epsilon=1e-6;
+
+	/**
+	 * The initial value of states not backed up yet. This must not be less than any state's real value, so it is
+	 * set from the rewards of the {@link RTDPAgent#mdp}.
+	 */
+	double heuristic;
+
+	/**
+	 * the number of trials run and of backups done
+	 */
+	int trials=0;
+	long backups=0;
+
+	Random random=new Random();
+
+	/**
+	 * This constructor trains the agent from the empty 3x3 board, with default MDP parameters
+	 */
+	public RTDPAgent()
+	{
+		this(0.9);
+	}
+
+	public RTDPAgent(double discountFactor)
+	{
+		this(discountFactor, 3, 3, 3);
+	}
+
+	/**
+	 * Use this constructor to train the agent for an m,n,k board
+	 * @param discountFactor
+	 * @param rows
+	 * @param cols
+	 * @param k
+	 */
+	public RTDPAgent(double discountFactor, int rows, int cols, int k)
+	{
+		this(discountFactor, new TTTMDP(), new Game(rows, cols, k));
+	}
+
+	/**
+	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP
+	 * @param discountFactor
+	 * @param winReward
+	 * @param loseReward
+	 * @param livingReward
+	 * @param drawReward
+	 */
+	public RTDPAgent(double discountFactor, double winReward, double loseReward, double livingReward, double drawReward)
+	{
+		this(discountFactor, new TTTMDP(winReward, loseReward, livingReward, drawReward), new Game());
+	}
+
+	/**
+	 * Trains the agent from game {@code start}, where it should be X's turn.
+	 * @param discountFactor
+	 * @param mdp
+	 * @param start
+	 */
+	RTDPAgent(double discountFactor, TTTMDP mdp, Game start)
+	{
+		this.discount=discountFactor;
+		this.mdp=mdp;
+
+		//no sequence of moves gets more than the best terminal reward if living costs something. Otherwise, bound
+		//every reward by the largest
+		double best=Math.max(Math.max(mdp.winReward, mdp.loseReward), Math.max(mdp.drawReward, 0));
+		if (mdp.livingReward<=0)
+			this.heuristic=best;
+		else
+			this.heuristic=Math.max(best, mdp.livingReward)/(1-discount);
+
+		super.policy=new Policy() {
+			public Move getMove(Game g) {
+				return bestMove(g);
+			}
+		};
+
+		solve(start);
+	}
+
+	/**
+	 * Runs trials from game {@code g} until it is solved.
+	 * @param g
+	 */
+	public void solve(Game g)
+	{
+		Game start=new Game(g);
+		while (!isSolved(start))
+			trial(start);
+	}
+
+	/**
+	 * @param g
+	 * @return the greedy move in game {@code g}, solving it first if needed
+	 */
+	Move bestMove(Game g)
+	{
+		//O plays what X would in its place, see Policy#mirrored
+		if (g.whoseTurn==g.o)
+			return Game.swapSides(bestMove(g.swapSides()));
+
+		if (!isSolved(g))
+			solve(g);
+
+		return greedyMove(g);
+	}
+
+	/**
+	 * One trial: follow the greedy policy from {@code start}, backing up each state on the way, until a solved
+	 * state is reached. Then try to label the visited states solved, last one first.
+	 */
+	private void trial(Game start)
+	{
+		trials++;
+		ArrayDeque<Game> visited=new ArrayDeque<Game>();
+		Game g=start;
+		while (!isSolved(g))
+		{
+			visited.push(g);
+			Move m=update(g);
+			g=sample(mdp.generateTransitions(g, m));
+		}
+
+		while (!visited.isEmpty())
+			if (!checkSolved(visited.pop()))
+				break;
+	}
+
+	/**
+	 * Labels {@code g} and every state the greedy policy can lead to from it solved, if none of them has a residual
+	 * of epsilon or more. If one has, backs up all the states looked at instead.
+	 * @return true if {@code g} was labeled solved
+	 */
+	private boolean checkSolved(Game g)
+	{
+		boolean converged=true;
+		ArrayDeque<Game> open=new ArrayDeque<Game>();
+		List<Game> closed=new ArrayList<Game>();
+		HashSet<Game> seen=new HashSet<Game>();
+
+		if (!isSolved(g))
+		{
+			open.push(g);
+			seen.add(g);
+		}
+
+		while (!open.isEmpty())
+		{
+			Game s=open.pop();
+			closed.add(s);
+
+			Move m=greedyMove(s);
+			if (Math.abs(value(s)-qValue(s, m))>=epsilon)
+			{
+				converged=false;
+				continue;
+			}
+
+			for (TransitionProb t: mdp.generateTransitions(s, m))
+			{
+				Game next=t.outcome.sPrime;
+				if (!isSolved(next) && seen.add(next))
+					open.push(next);
+			}
+		}
+
+		if (converged)
+			solved.addAll(closed);
+		else
+			for (int i=closed.size()-1; i>=0; i--)
+				update(closed.get(i));
+
+		return converged;
+	}
+
+	/**
+	 * Sets the value of {@code g} to that of its greedy move.
+	 * @return the greedy move
+	 */
+	private Move update(Game g)
+	{
+		backups++;
+		Move best=null;
+		double bestQ=Double.NEGATIVE_INFINITY;
+		for (Move m: g.getPossibleMoves())
+		{
+			double q=qValue(g, m);
+			if (q>bestQ)
+			{
+				bestQ=q;
+				best=m;
+			}
+		}
+		valueFunction.put(g, bestQ);
+		return best;
+	}
+
+	/**
+	 * @return the move with the largest Q-value in {@code g} (the first one, if several are equally good)
+	 */
+	private Move greedyMove(Game g)
+	{
+		Move best=null;
+		double bestQ=Double.NEGATIVE_INFINITY;
+		for (Move m: g.getPossibleMoves())
+		{
+			double q=qValue(g, m);
+			if (q>bestQ)
+			{
+				bestQ=q;
+				best=m;
+			}
+		}
+		return best;
+	}
+
+	private double qValue(Game g, Move m)
+	{
+		double q=0;
+		for (TransitionProb t: mdp.generateTransitions(g, m))
+			q+=t.prob*(t.outcome.localReward+discount*value(t.outcome.sPrime));
+		return q;
+	}
+
+	/**
+	 * @return the current value of {@code g}: 0 if it's terminal, {@link RTDPAgent#heuristic} if it hasn't been
+	 * backed up yet
+	 */
+	double value(Game g)
+	{
+		if (g.isTerminal())
+			return 0;
+
+		Double v=valueFunction.get(g);
+		return v==null?heuristic:v;
+	}
+
+	/**
+	 * @param g
+	 * @return true if {@code g} is terminal or has been labeled solved, i.e. its value and those of the games the 
+	 * greedy policy leads to from it have converged
+	 */
+	public boolean isSolved(Game g)
+	{
+		return g.isTerminal() || solved.contains(g);
+	}
+
+	/**
+	 * @return the next game of a transition picked at random according to the probabilities
+	 */
+	private Game sample(List<TransitionProb> transitions)
+	{
+		double r=random.nextDouble();
+		for (TransitionProb t: transitions)
+		{
+			r-=t.prob;
+			if (r<0)
+				return t.outcome.sPrime;
+		}
+		return transitions.get(transitions.size()-1).outcome.sPrime;
+	}
+
+	/**
+	 * @return the number of backups done so far
+	 */
+	public long getBackups()
+	{
+		return backups;
+	}
+
+	/**
+	 * @return the number of trials run so far
+	 */
+	public int getTrials()
+	{
+		return trials;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method to play the agent against a human agent.
+		RTDPAgent agent=new RTDPAgent();
+		HumanAgent d=new HumanAgent();
+		Game g=new Game(agent, d, d);
+		g.playOut();
+	}
+
+}
@@ -0,0 +1,224 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The games that can actually come up in play, starting from the empty board with a given player to move: a breadth
+ * first enumeration, one layer per ply (number of pieces on the board). Terminal games are included but not expanded,
+ * so positions such as both players having a line never appear.
+ *
+ * Layers are only worked out when something asks for them, and are then kept, so a stream that is abandoned early
+ * never expands the later plies. The two enumerations of the 3x3 board are shared; see {@link #get(char)}.
+ * Each game handed out is a fresh copy that the caller is free to change.
+ */
+final class ReachableStates {
+
+	private static class ClassicHolder {
+		static final ReachableStates X_FIRST = new ReachableStates(new Game('X'));
+		static final ReachableStates O_FIRST = new ReachableStates(new Game('O'));
+	}
+
+	/**
+	 * @return the (shared) enumeration of the 3x3 games where {@code first} plays first
+	 */
+	static ReachableStates get(char first) {
+		if (first != 'X' && first != 'O')
+			throw new IllegalArgumentException("Argument should be either 'X' or 'O'");
+
+		return first == 'X' ? ClassicHolder.X_FIRST : ClassicHolder.O_FIRST;
+	}
+
+	/**
+	 * @return the enumeration of the games on an m,n,k board where {@code first} plays first
+	 */
+	static ReachableStates get(char first, int rows, int cols, int k) {
+		if (rows == 3 && cols == 3 && k == 3)
+			return get(first);
+		if (first != 'X' && first != 'O')
+			throw new IllegalArgumentException("Argument should be either 'X' or 'O'");
+
+		Agent x = new Agent();
+		Agent o = new Agent();
+		return new ReachableStates(new Game(x, o, first == 'X' ? x : o, rows, cols, k));
+	}
+
+	/**
+	 * layers.get(ply) holds the games with that many pieces on the board
+	 */
+	private final List<Game[]> layers = new ArrayList<Game[]>();
+
+	/**
+	 * true once a layer without any ongoing games has been reached, i.e. all layers are known
+	 */
+	private boolean complete;
+
+	private ReachableStates(Game start) {
+		layers.add(new Game[] { start });
+	}
+
+	/**
+	 * @return the games with {@code ply} pieces on the board, or null if there are none. Must not be modified.
+	 */
+	synchronized Game[] layer(int ply) {
+		while (ply >= layers.size() && !complete)
+			expand();
+
+		return ply < layers.size() ? layers.get(ply) : null;
+	}
+
+	/**
+	 * @return the number of plies, i.e. of layers
+	 */
+	synchronized int plies() {
+		while (!complete)
+			expand();
+
+		return layers.size();
+	}
+
+	/**
+	 * adds the layer after the last one. Games of earlier layers may be being copied by other threads, so they are
+	 * never played on directly.
+	 */
+	private void expand() {
+		Set<Game> next = new HashSet<Game>();
+		for (Game g : layers.get(layers.size() - 1)) {
+			if (g.isTerminal())
+				continue;
+
+			Game work = new Game(g);
+			for (long empty = work.emptyCells(); empty != 0; empty &= empty - 1) {
+				work.makeMove(Long.numberOfTrailingZeros(empty));
+				if (!next.contains(work))
+					next.add(new Game(work));
+				work.unmakeMove();
+			}
+		}
+
+		if (next.isEmpty())
+			complete = true;
+		else
+			layers.add(next.toArray(new Game[next.size()]));
+	}
+
+	/**
+	 * @return all reachable games, ply by ply. The stream can be made parallel, in which case it is split within and
+	 *         across plies.
+	 */
+	Stream<Game> stream() {
+		return StreamSupport.stream(new LayerSpliterator(), false);
+	}
+
+	/**
+	 * Walks the layers in order. A spliterator either runs from a position in one layer to the end of all layers, or
+	 * (once split off) covers a range within a single layer.
+	 */
+	private final class LayerSpliterator implements Spliterator<Game> {
+
+		private int ply;
+		private Game[] current;
+		private int index;
+		private int fence;
+		private final boolean single;
+		private final boolean sized;
+
+		LayerSpliterator() {
+			this.ply = 0;
+			this.current = layer(0);
+			this.index = 0;
+			this.fence = current.length;
+			this.single = false;
+			synchronized (ReachableStates.this) {
+				this.sized = complete;
+			}
+		}
+
+		private LayerSpliterator(int ply, Game[] current, int index, int fence) {
+			this.ply = ply;
+			this.current = current;
+			this.index = index;
+			this.fence = fence;
+			this.single = true;
+			this.sized = true;
+		}
+
+		/**
+		 * moves on to the start of the next layer
+		 *
+		 * @return false if there is none
+		 */
+		private boolean nextLayer() {
+			Game[] next = layer(ply + 1);
+			if (next == null)
+				return false;
+
+			ply++;
+			current = next;
+			index = 0;
+			fence = next.length;
+			return true;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Game> action) {
+			while (index >= fence)
+				if (single || !nextLayer())
+					return false;
+
+			action.accept(new Game(current[index++]));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Game> action) {
+			do {
+				for (; index < fence; index++)
+					action.accept(new Game(current[index]));
+			} while (!single && nextLayer());
+		}
+
+		@Override
+		public Spliterator<Game> trySplit() {
+			// hand over the rest of this layer and carry on with the next one
+			if (!single && layer(ply + 1) != null) {
+				LayerSpliterator prefix = new LayerSpliterator(ply, current, index, fence);
+				nextLayer();
+				return prefix;
+			}
+
+			int mid = (index + fence) >>> 1;
+			if (mid == index)
+				return null;
+
+			LayerSpliterator prefix = new LayerSpliterator(ply, current, index, mid);
+			index = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			if (!sized)
+				return Long.MAX_VALUE;
+
+			long size = fence - index;
+			if (!single)
+				for (int p = ply + 1; layer(p) != null; p++)
+					size += layer(p).length;
+			return size;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | IMMUTABLE | (sized ? SIZED | SUBSIZED : 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,119 @@
+package ticTacToe;
+
+import java.util.Map;
+
+/**
+ * An agent that solves the {@link TTTMDP} by retrograde analysis (backward induction): since every move adds a piece, 
+ * the states can be ordered so that every state comes after all the states it can lead to, and then one pass 
+ * from the full boards back to the empty board gives the exact optimal values, with no sweeps to repeat. 
+ * See {@link DenseValueIteration#retrograde()}.
+ * 
+ * The values are the ones value iteration converges to, and the policy (see {@link Agent#getPolicy()}) is the greedy 
+ * policy with respect to them, so it can be used wherever a value iteration policy is.
+ *
+ */
+public class RetrogradeAgent extends Agent {
+	
+	/**
+	 * the values of the states, filled in by {@link RetrogradeAgent#train}
+	 */
+	Map<Game, Double> valueFunction;
+	
+	/**
+	 * the discount factor (gamma)
+	 */
+	double discount=0.9;
+	
+	/**
+	 * the MDP model
+	 */
+	TTTMDP mdp=new TTTMDP();
+	
+	/**
+	 * If true, only canonical games (see {@link Game#canonical()}) are solved, and the others are played through 
+	 * their canonical form.
+	 */
+	boolean canonical=false;
+	
+	/**
+	 * This constructor solves the MDP with the default parameters and sets the agent's policy
+	 */
+	public RetrogradeAgent()
+	{
+		this(0.9);
+	}
+	
+	public RetrogradeAgent(double discountFactor)
+	{
+		this(discountFactor, false);
+	}
+	
+	/**
+	 * Use this constructor to solve the MDP over canonical games only, if {@code canonical} is true.
+	 * @param discountFactor
+	 * @param canonical
+	 */
+	public RetrogradeAgent(double discountFactor, boolean canonical)
+	{
+		this.discount=discountFactor;
+		this.canonical=canonical;
+		train();
+	}
+	
+	/**
+	 * Use this constructor to solve the MDP against an opponent that replies as {@code opponent} says.
+	 * @param discountFactor
+	 * @param opponent
+	 */
+	public RetrogradeAgent(double discountFactor, OpponentModel opponent)
+	{
+		this.discount=discountFactor;
+		this.mdp=new TTTMDP(opponent);
+		train();
+	}
+	
+	/**
+	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP
+	 * @param discountFactor
+	 * @param winReward
+	 * @param loseReward
+	 * @param livingReward
+	 * @param drawReward
+	 */
+	public RetrogradeAgent(double discountFactor, double winReward, double loseReward, double livingReward, double drawReward)
+	{
+		this.discount=discountFactor;
+		this.mdp=new TTTMDP(winReward, loseReward, livingReward, drawReward);
+		train();
+	}
+	
+	/**
+	 * Solves the MDP in one backward pass, and sets the agent's policy.
+	 */
+	public void train()
+	{
+		DenseValueIteration engine=new DenseValueIteration(mdp.compile(canonical), discount);
+		engine.retrograde();
+		this.valueFunction=engine.valueFunction();
+		super.policy=engine.extractPolicy();
+	}
+	
+	/**
+	 * @param g a game reachable in play
+	 * @return the value of {@code g}
+	 */
+	public double getValue(Game g)
+	{
+		return valueFunction.get(canonical?g.canonical():g);
+	}
+	
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method to play the agent against a human agent.
+		RetrogradeAgent agent=new RetrogradeAgent();
+		HumanAgent d=new HumanAgent();
+		Game g=new Game(agent, d, d);
+		g.playOut();
+	}
+
+}
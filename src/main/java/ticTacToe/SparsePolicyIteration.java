@@ -0,0 +1,153 @@
+package ticTacToe;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Policy iteration with the policy's MDP assembled as a sparse matrix (see {@link PolicyMatrix}): evaluation solves
+ * V = R_pi + discount * P_pi V, and improvement patches the rows of the states whose action changed instead of
+ * assembling the matrix again.
+ *
+ * Evaluation is either exact, by back substitution, as P_pi is triangular (one pass from the last state to the first,
+ * like {@link DenseValueIteration#retrograde()}), or iterative, by matrix-vector products V_{k+1} = R_pi + discount
+ * * P_pi V_k until no value changes by more than delta. Products and improvement steps are split across a
+ * {@link ForkJoinPool} if there is one; back substitution always runs in the calling thread. The initial policy plays
+ * the first action in every state, and improvement only switches to a strictly better action, as in
+ * {@link DensePolicyIteration}.
+ */
+final class SparsePolicyIteration extends DenseSolver {
+
+	/**
+	 * the action the current policy plays in each state, -1 in terminal states
+	 */
+	final int[] policy;
+
+	final PolicyMatrix matrix;
+
+	/**
+	 * where the next product writes its values
+	 */
+	private double[] next;
+
+	/**
+	 * the number of evaluation sweeps (products or back substitutions) and improvement steps done, and of rows
+	 * patched
+	 */
+	int evaluationSweeps;
+	int improvements;
+	long rowsPatched;
+
+	/**
+	 * @param pool the pool to run products and improvement in, or null to run them in the calling thread
+	 */
+	SparsePolicyIteration(CompiledMDP mdp, double discount, ForkJoinPool pool) {
+		super(mdp, discount, pool);
+		int n = graph.size();
+		this.policy = new int[n];
+		for (int s = 0; s < n; s++)
+			policy[s] = graph.terminal[s] ? -1 : graph.actionStart[s];
+		this.matrix = new PolicyMatrix(mdp, policy);
+		this.next = new double[n];
+	}
+
+	/**
+	 * Alternates evaluation and improvement until the policy no longer changes.
+	 *
+	 * @param exact     if true, evaluate by back substitution, otherwise by products
+	 * @param delta     products stop once no value changes by more than this
+	 * @param maxSweeps the most products per evaluation
+	 */
+	void solve(boolean exact, double delta, int maxSweeps) {
+		boolean converged = exact ? backSubstitute() : multiply(delta, maxSweeps);
+
+		// with a cap on the products, the values may not have converged even if the policy didn't change
+		while (improve() > 0 || !converged)
+			converged = exact ? backSubstitute() : multiply(delta, maxSweeps);
+	}
+
+	/**
+	 * Solves for the exact values of the current policy in one pass.
+	 *
+	 * @return true
+	 */
+	boolean backSubstitute() {
+		for (int s = values.length - 1; s >= 0; s--)
+			values[s] = matrix.row(s, values, discount);
+		evaluationSweeps++;
+		return true;
+	}
+
+	/**
+	 * Evaluates the current policy by matrix-vector products, starting from the current values.
+	 *
+	 * @return true if the values converged, false if {@code maxSweeps} products were done first
+	 */
+	boolean multiply(double delta, int maxSweeps) {
+		for (int i = 0; i < maxSweeps; i++) {
+			final double[] v = values;
+			final double[] out = next;
+			forEachRange(new RangeAction() {
+				public void run(int from, int to) {
+					for (int s = from; s < to; s++)
+						out[s] = matrix.row(s, v, discount);
+				}
+			});
+
+			double change = 0;
+			for (int s = 0; s < values.length; s++)
+				change = Math.max(change, Math.abs(out[s] - v[s]));
+			values = out;
+			next = v;
+			evaluationSweeps++;
+
+			if (change <= delta)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Makes the policy greedy with respect to the current values, patching the rows of the states whose action
+	 * changed.
+	 *
+	 * @return the number of states whose action changed
+	 */
+	int improve() {
+		improvements++;
+		int changed = sumOverRanges(values.length, new RangeCount() {
+			public int run(int from, int to) {
+				int count = 0;
+				for (int s = from; s < to; s++) {
+					if (graph.terminal[s])
+						continue;
+
+					int best = policy[s];
+					double bestQ = qValue(best);
+					for (int a = graph.actionStart[s]; a < graph.actionStart[s + 1]; a++) {
+						double q = qValue(a);
+						if (q > bestQ) {
+							bestQ = q;
+							best = a;
+						}
+					}
+
+					if (best != policy[s]) {
+						policy[s] = best;
+						matrix.setRow(s, best);
+						count++;
+					}
+				}
+				return count;
+			}
+		});
+		rowsPatched += changed;
+		return changed;
+	}
+
+	/**
+	 * @return the current policy
+	 */
+	Policy extractPolicy() {
+		return toPolicy(policy);
+	}
+
+}
@@ -0,0 +1,134 @@
+package ticTacToe;
+
+import java.util.Arrays;
+
+/**
+ * An immutable table of every valid Tic Tac Toe state, i.e. every
+ * {@link Game#hashCode} for which {@link Game#inverseHash} gives a
+ * {@link Game#isValid} game. It is built once, on first use, and shared by
+ * everything that needs to walk over the state space, so that agents no
+ * longer scan all 59048 possible hashes each time they are constructed.
+ *
+ * States are numbered 0..size()-1 in increasing order of their hash code.
+ * For each one the catalogue stores its outcome (as in
+ * {@link Game#getState}), whose turn it is and the mask of cells that can
+ * legally be played (see {@link Game#emptyCells}), which is empty for
+ * terminal states. {@link Game#generateAllValidGames} filters on the first
+ * two; {@link TransitionGraph} is built from the lookups, without evaluating
+ * any boards.
+ */
+final class StateCatalogue {
+
+	/**
+	 * the number of possible game hashes: 2222222222 in base 3, plus one
+	 */
+	static final int HASHES = 59049;
+
+	private static class Holder {
+		static final StateCatalogue INSTANCE = new StateCatalogue();
+	}
+
+	/**
+	 * @return the catalogue, building it if this is the first call. Safe to
+	 *         call from any thread.
+	 */
+	static StateCatalogue get() {
+		return Holder.INSTANCE;
+	}
+
+	private final int[] codes;
+	private final byte[] outcomes;
+	private final char[] toMove;
+	private final short[] legalMoves;
+
+	/**
+	 * hash code -> state index, or -1 if the hash is not a valid state
+	 */
+	private final int[] index = new int[HASHES];
+
+	private StateCatalogue() {
+		int[] codes = new int[HASHES];
+		byte[] outcomes = new byte[HASHES];
+		char[] toMove = new char[HASHES];
+		short[] legalMoves = new short[HASHES];
+		Arrays.fill(index, -1);
+
+		int n = 0;
+		for (int hash = 0; hash < HASHES; hash++) {
+			Game g = Game.inverseHash(hash);
+			if (g == null || !g.isValid())
+				continue;
+
+			int outcome = g.evaluateGameState();
+			index[hash] = n;
+			codes[n] = hash;
+			outcomes[n] = (byte) outcome;
+			toMove[n] = g.whoseTurn.getName();
+			legalMoves[n] = (short) (outcome == Game.ONGOING ? g.emptyCells() : 0);
+			n++;
+		}
+
+		this.codes = Arrays.copyOf(codes, n);
+		this.outcomes = Arrays.copyOf(outcomes, n);
+		this.toMove = Arrays.copyOf(toMove, n);
+		this.legalMoves = Arrays.copyOf(legalMoves, n);
+	}
+
+	/**
+	 * @return the number of valid states
+	 */
+	int size() {
+		return codes.length;
+	}
+
+	/**
+	 * @param hash a {@link Game#hashCode}
+	 * @return the index of that state, or -1 if it isn't a valid state
+	 */
+	int indexOf(int hash) {
+		if (hash < 0 || hash >= HASHES)
+			return -1;
+		return index[hash];
+	}
+
+	int code(int i) {
+		return codes[i];
+	}
+
+	boolean isTerminal(int i) {
+		return outcomes[i] != Game.ONGOING;
+	}
+
+	/**
+	 * @return one of {@link Game#ONGOING}, {@link Game#X_WON},
+	 *         {@link Game#O_WON} or {@link Game#DRAW}
+	 */
+	int outcome(int i) {
+		return outcomes[i];
+	}
+
+	/**
+	 * @return 'X' or 'O'
+	 */
+	char toMove(int i) {
+		return toMove[i];
+	}
+
+	/**
+	 * @return the mask of cells the side to move may play in, 0 if the state
+	 *         is terminal
+	 */
+	int legalMoves(int i) {
+		return legalMoves[i];
+	}
+
+	/**
+	 * @return a new Game for state {@code i}, already evaluated
+	 */
+	Game game(int i) {
+		Game g = Game.inverseHash(codes[i]);
+		g.state = outcomes[i];
+		return g;
+	}
+
+}
@@ -0,0 +1,120 @@
+package ticTacToe;
+
+/**
+ * The 8 symmetries of the 3x3 board (the rotations and reflections, i.e. the dihedral group D4) as
+ * permutations of the cells, and the tables needed to put a board into canonical form. The canonical
+ * form of a board is the one, out of its 8 transformations, with the smallest {@link Game#boardCode}.
+ *
+ * Transformation 0 is always the identity.
+ */
+final class Symmetry {
+
+	static final int COUNT = 8;
+
+	/**
+	 * CELL[t][c] is the cell that cell c is moved to by transformation t
+	 */
+	static final int[][] CELL = new int[COUNT][9];
+
+	/**
+	 * INVERSE[t][c] is the cell that is moved to cell c by transformation t
+	 */
+	static final int[][] INVERSE = new int[COUNT][9];
+
+	static {
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++) {
+				int[][] images = { { i, j }, // identity
+						{ j, 2 - i }, // rotate 90
+						{ 2 - i, 2 - j }, // rotate 180
+						{ 2 - j, i }, // rotate 270
+						{ i, 2 - j }, // mirror left-right
+						{ 2 - i, j }, // mirror top-bottom
+						{ j, i }, // main diagonal
+						{ 2 - j, 2 - i } // anti diagonal
+				};
+				for (int t = 0; t < COUNT; t++) {
+					int cell = i * 3 + j;
+					int image = images[t][0] * 3 + images[t][1];
+					CELL[t][cell] = image;
+					INVERSE[t][image] = cell;
+				}
+			}
+	}
+
+	private static class Tables {
+		/**
+		 * for every board code, the transformation that takes it to its canonical form
+		 */
+		static final byte[] CANONICAL_TRANSFORM = new byte[19683];
+
+		/**
+		 * for every board code, the set (as a bit mask) of transformations that
+		 * leave it unchanged
+		 */
+		static final byte[] STABILIZER = new byte[19683];
+
+		static {
+			for (int code = 0; code < CANONICAL_TRANSFORM.length; code++) {
+				int best = 0;
+				int bestCode = code;
+				int stabilizer = 1;
+				for (int t = 1; t < COUNT; t++) {
+					int c = transformCode(code, t);
+					if (c == code)
+						stabilizer |= 1 << t;
+					if (c < bestCode) {
+						bestCode = c;
+						best = t;
+					}
+				}
+				CANONICAL_TRANSFORM[code] = (byte) best;
+				STABILIZER[code] = (byte) stabilizer;
+			}
+		}
+	}
+
+	private Symmetry() {
+	}
+
+	/**
+	 * @param boardCode see {@link Game#boardCode}
+	 * @param t         a transformation
+	 * @return the board code of the board after applying {@code t} to it
+	 */
+	static int transformCode(int boardCode, int t) {
+		int result = 0;
+		for (int cell = 8; cell >= 0; cell--, boardCode /= 3)
+			result += (boardCode % 3) * Game.POW3[CELL[t][cell]];
+		return result;
+	}
+
+	/**
+	 * @return the transformation that takes {@code boardCode} to its canonical form
+	 */
+	static int canonicalTransform(int boardCode) {
+		return Tables.CANONICAL_TRANSFORM[boardCode];
+	}
+
+	/**
+	 * @return the canonical form of {@code boardCode}
+	 */
+	static int canonicalCode(int boardCode) {
+		return transformCode(boardCode, canonicalTransform(boardCode));
+	}
+
+	/**
+	 * A board that is symmetric to itself has moves that are equivalent to each
+	 * other, e.g. all four corners of the empty board.
+	 *
+	 * @return the smallest cell equivalent to {@code cell} on the board
+	 *         {@code boardCode}
+	 */
+	static int canonicalCell(int boardCode, int cell) {
+		int best = cell;
+		for (int ts = Tables.STABILIZER[boardCode] & 0xFF; ts != 0; ts &= ts - 1)
+			best = Math.min(best, CELL[Integer.numberOfTrailingZeros(ts)][cell]);
+		return best;
+	}
+
+}
@@ -27,6 +27,13 @@ public class TTTEnvironment {
 	double livingReward=-1.00;
 	double drawReward=0.0;
 	
+	/**
+	 * The board the games are played on: rows x cols, k in a row to win. Tic Tac Toe by default.
+	 */
+	int rows=3;
+	int cols=3;
+	int k=3;
+	
 	
 	/**
 	 * By default, the environment contains an opponent that plays randomly, i.e. a {@link RandomAgent}; and uses all the
@@ -42,6 +49,21 @@ public class TTTEnvironment {
 		game=new Game(new Agent(), opponent);
 	}
 	
+	/**
+	 * An environment where the games are played on an m,n,k board (see {@link Game#Game(int, int, int)}).
+	 * @param opponent
+	 * @param rows
+	 * @param cols
+	 * @param k
+	 */
+	public TTTEnvironment(Agent opponent, int rows, int cols, int k)
+	{
+		this.rows=rows;
+		this.cols=cols;
+		this.k=k;
+		game=new Game(new Agent(), opponent, rows, cols, k);
+	}
+	
 	public TTTEnvironment(Agent opponent, double winReward, double loseReward, double livingReward, double drawReward)
 	{
 		game=new Game(new Agent(), opponent);
@@ -141,7 +163,7 @@ public class TTTEnvironment {
 	 */
 	public void reset()
 	{
-		this.game=new Game(new Agent(), new RandomAgent());
+		this.game=new Game(new Agent(), new RandomAgent(), rows, cols, k);
 	}
 	
 	
@@ -3,6 +3,7 @@ package ticTacToe;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class specifies a full MDP for the Tic Tac Toe game, i.e. the Transition Function, 
@@ -18,8 +19,10 @@ import java.util.List;
  * and Policy Iteration, and, crucially, NOT in Reinforcement Learning 
  * (e.g. Q-learning) where you should't assume access to such a model.
  * 
- * Note: This class assumes that the Value/Policy Iteration agents always play 
- * as 'X' (never 'O') - as does the {@link ValueIterationAgent} class.
+ * Note: transitions and rewards are from the point of view of the side making 
+ * the move, X or O, with the other side replying. The MDP is the same for either 
+ * side up to swapping X and O (see {@link Game#swapSides()}), so the planning agents 
+ * solve it for X only, and play O through the same policy.
  * 
  * @author ae187
  */
@@ -31,12 +34,46 @@ public class TTTMDP {
 	double livingReward=-1.00;
 	double drawReward=0.0;
 	
-	public TTTMDP() {
+	/**
+	 * how the opponent replies, see {@link OpponentModel}
+	 */
+	final OpponentModel opponent;
+	
+	/**
+	 * the checked replies of a non-random opponent after each 3x3 game, by hash code, worked out on first use. The 
+	 * random opponent needs no table, as its replies are uniform.
+	 */
+	private final AtomicReferenceArray<double[]> replyTable;
 	
+	/**
+	 * The last compiled versions of this MDP, see {@link #compile(boolean)}
+	 */
+	private volatile CompiledMDP compiled;
+	private volatile CompiledMDP compiledCanonical;
+	
+	public TTTMDP() {
+		this(OpponentModel.RANDOM);
 		
 	}
 
 	public TTTMDP(double win, double lose, double live, double draw) {
+		this(win, lose, live, draw, OpponentModel.RANDOM);
+	}
+	
+	/**
+	 * An MDP with the default rewards, where the opponent replies as {@code opponent} says 
+	 * (e.g. {@link OpponentModel#DEFENSIVE}) instead of at random.
+	 * @param opponent
+	 */
+	public TTTMDP(OpponentModel opponent) {
+		if (opponent==null)
+			throw new IllegalArgumentException("The opponent model can't be null");
+		this.opponent=opponent;
+		this.replyTable=(opponent==OpponentModel.RANDOM)?null:new AtomicReferenceArray<double[]>(StateCatalogue.HASHES);
+	}
+	
+	public TTTMDP(double win, double lose, double live, double draw, OpponentModel opponent) {
+		this(opponent);
 		this.winReward=win;
 		this.loseReward=lose;
 		this.livingReward=live;
@@ -47,9 +84,9 @@ public class TTTMDP {
 	/**
 	 * Generates a list of TransitionProb objects containing game outcomes 
 	 * (source game, move, reward, target game) tuples paired with their probabilities. 
-	 * This essentially gives you a uniform probability distribution over all possible 
+	 * This essentially gives you a probability distribution over all possible 
 	 * resulting game states and rewards when making move {@code m} 
-	 * in game {@code g}. This is implemented for you to use in your Value Iteration and 
+	 * in game {@code g}: uniform, unless the MDP has another {@link OpponentModel}. This is implemented for you to use in your Value Iteration and 
 	 * Policy Iteration implementations. 
 	 * @param g
 	 * @param m
@@ -60,10 +97,10 @@ public class TTTMDP {
 		if (g.whoseTurn.getName()!=m.who.getName())
 			throw new IllegalArgumentException("It's not "+m.who.getName()+"'s turn in game. This shouldn't happen!");
 		
-		if (m.who.getName()=='O')
-		{
-			throw new IllegalStateException("Value Iteration Agent is playing O. This will lead to unexpected results. It shouldn't happen.");
-		}
+		//the side whose point of view the rewards are from
+		char mover=m.who.getName();
+		int won=(mover=='X')?Game.X_WON:Game.O_WON;
+		int lost=(mover=='X')?Game.O_WON:Game.X_WON;
 		
 		List<TransitionProb> result=new ArrayList<TransitionProb>();
 		//first simulate move m
@@ -80,10 +117,10 @@ public class TTTMDP {
 			return result;
 		}
 		
-		//first check if X has won.
-		if (intermediate.getState()==Game.X_WON)
+		//first check if the mover has won.
+		if (intermediate.getState()==won)
 		{
-			//if we are here, X won the game. 
+			//if we are here, the mover won the game. 
 			double reward=this.winReward;
 			Outcome o=new Outcome(g, m, reward, intermediate);
 			TransitionProb transProb=new TransitionProb(o, 1.0);
@@ -103,14 +140,22 @@ public class TTTMDP {
 		}
 		
 		
-		//If we are here equal chance that the opponent will move into the available places.
-		//we generate simulate all these, and associate them with equal probability
+		//If we are here the opponent moves into one of the available places, as the opponent model says.
+		//we generate simulate all these, and associate them with their probabilities
 		
 		List<Game> nextPossibleStates=intermediate.getAllSuccessorGames();
+		double[] replies=(replyTable==null)?null:repliesAfter(intermediate);
+		long empty=intermediate.emptyCells();
 		for(Game game: nextPossibleStates)
 		{
+			//the successors come in the order of their cells
+			double prob=(replies==null)?(double)1/nextPossibleStates.size():replies[Long.numberOfTrailingZeros(empty)];
+			empty&=empty-1;
+			if (prob==0)
+				continue;
+			
 			double reward;	
-			if(game.getState()==Game.O_WON)
+			if(game.getState()==lost)
 			{
 				reward=this.loseReward;
 				
@@ -127,7 +172,6 @@ public class TTTMDP {
 			}
 			
 			Outcome o=new Outcome(g, m, reward, game);
-			double prob=(double)1/nextPossibleStates.size();
 			
 			TransitionProb transProb=new TransitionProb(o, prob);
 			result.add(transProb);
@@ -144,6 +188,85 @@ public class TTTMDP {
 	
 	
 	
+	/**
+	 * @param intermediate a game that isn't over, where it's the opponent's turn
+	 * @return the opponent's replies, from {@link #replyTable} on the 3x3 board
+	 */
+	private double[] repliesAfter(Game intermediate)
+	{
+		if (!intermediate.shape.isClassic())
+			return replies(opponent, intermediate);
+		
+		double[] replies=replyTable.get(intermediate.hashCode());
+		if (replies==null)
+		{
+			replies=replies(opponent, intermediate);
+			replyTable.set(intermediate.hashCode(), replies);
+		}
+		return replies;
+	}
+	
+	/**
+	 * @param opponent
+	 * @param g a game that isn't over, where it's the opponent's turn
+	 * @return {@code opponent.replies(g)}, checked to be a probability distribution over the empty cells of {@code g}
+	 * @throws IllegalArgumentException if it isn't one
+	 */
+	static double[] replies(OpponentModel opponent, Game g)
+	{
+		double[] replies=opponent.replies(g);
+		if (replies==null || replies.length!=g.shape.cells)
+			throw new IllegalArgumentException("The "+opponent+" opponent model should give one probability per cell, in:\n"+g);
+		
+		long empty=g.emptyCells();
+		double sum=0;
+		for (int cell=0; cell<replies.length; cell++)
+		{
+			if (!(replies[cell]>=0) || replies[cell]>1)
+				throw new IllegalArgumentException("The "+opponent+" opponent model gives probability "+replies[cell]+" to cell "+cell+" in:\n"+g);
+			if (replies[cell]>0 && (empty&(1L<<cell))==0)
+				throw new IllegalArgumentException("The "+opponent+" opponent model plays in occupied cell "+cell+" in:\n"+g);
+			sum+=replies[cell];
+		}
+		if (Math.abs(sum-1)>1e-9)
+			throw new IllegalArgumentException("The "+opponent+" opponent model's probabilities add up to "+sum+" in:\n"+g);
+		return replies;
+	}
+	
+	/**
+	 * Compiles this MDP (3x3 only) into flat arrays, so that solvers can sweep over all states and transitions 
+	 * without generating any objects. Against the random opponent the transition structure is shared by all TTTMDP 
+	 * instances; against another {@link OpponentModel} it is built for, and kept by, this one. The result is cached 
+	 * until the rewards change; it is immutable, and safe to share between threads.
+	 * @return the compiled MDP
+	 */
+	CompiledMDP compile()
+	{
+		return compile(false);
+	}
+	
+	/**
+	 * As {@link #compile()}, but if {@code canonical} is true the compiled MDP only has canonical states 
+	 * (see {@link Game#canonical()}). Only symmetric opponent models can be compiled that way.
+	 * @param canonical
+	 * @return the compiled MDP
+	 */
+	CompiledMDP compile(boolean canonical)
+	{
+		CompiledMDP c=canonical?compiledCanonical:compiled;
+		if (c==null || !c.hasRewards(winReward, loseReward, livingReward, drawReward))
+		{
+			//the transitions only depend on the opponent model, so they are kept when the rewards change
+			TransitionGraph graph=(c==null)?TransitionGraph.of(opponent, canonical):c.graph;
+			c=new CompiledMDP(graph, winReward, loseReward, livingReward, drawReward);
+			if (canonical)
+				compiledCanonical=c;
+			else
+				compiled=c;
+		}
+		return c;
+	}
+	
 	public boolean isTerminal(Game g)
 	{
 		return g.isTerminal();
@@ -158,7 +281,7 @@ public class TTTMDP {
 		//g.executeMove('X',1,1);
 		g.executeMove('O', 2,2);
 		
-		Move m=new Move('X', 0,2); //g.executeMove('X', 0,2);
+		Move m=Move.of('X', 0,2); //g.executeMove('X', 0,2);
 		
 		TTTMDP gm=new TTTMDP();
 		List<TransitionProb> tps=gm.generateTransitions(g, m);
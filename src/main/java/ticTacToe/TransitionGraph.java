@@ -0,0 +1,249 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The transition structure of the {@link TTTMDP}, worked out once and stored in flat arrays: which states there are,
+ * which actions each one has, and for every action the successor states with their probabilities and the kind of
+ * reward received. Rewards themselves are not stored here, as they depend on the MDP's parameters; see
+ * {@link CompiledMDP}. The graph is 3x3 only and immutable, so one instance is shared by everything.
+ *
+ * The layout is CSR-like: the actions of state s are {@code actionStart[s]} to {@code actionStart[s+1]-1}, and the
+ * transitions of action a are {@code transStart[a]} to {@code transStart[a+1]-1}. Terminal states have no actions.
+ *
+ * States are those of {@link Game#generateReachableGames(char)} for X: the games that can come up in play where it is
+ * X's turn, and the terminal ones. They are numbered in that order, by ply, so every transition goes from a state to
+ * one with a higher index. If the graph is canonical, only canonical states (see {@link Game#canonical()}) are
+ * included, and every transition leads to the canonical form of its target.
+ *
+ * O's replies follow an {@link OpponentModel}, uniformly random by default. The reply distributions are worked out
+ * once, when the graph is built, so solving against any model costs the same. Graphs of other models aren't shared:
+ * whoever builds one (a {@link TTTMDP}, a {@link BatchSolver}) keeps it, and it goes when they do.
+ */
+final class TransitionGraph {
+
+	/**
+	 * the kinds of reward a transition can give
+	 */
+	static final byte WIN = 0;
+	static final byte LOSE = 1;
+	static final byte LIVE = 2;
+	static final byte DRAW = 3;
+
+	private static class FullHolder {
+		static final TransitionGraph INSTANCE = new TransitionGraph(OpponentModel.RANDOM, false);
+	}
+
+	private static class CanonicalHolder {
+		static final TransitionGraph INSTANCE = new TransitionGraph(OpponentModel.RANDOM, true);
+	}
+
+	/**
+	 * @return the shared graph against the random opponent, built on first use. Safe to call from any thread.
+	 */
+	static TransitionGraph get(boolean canonical) {
+		return canonical ? CanonicalHolder.INSTANCE : FullHolder.INSTANCE;
+	}
+
+	/**
+	 * @return the shared graph if {@code opponent} is {@link OpponentModel#RANDOM}, otherwise a new graph against it
+	 * @throws IllegalArgumentException if {@code canonical} is true but the model isn't symmetric
+	 */
+	static TransitionGraph of(OpponentModel opponent, boolean canonical) {
+		if (opponent == OpponentModel.RANDOM)
+			return get(canonical);
+		if (canonical && !opponent.isSymmetric())
+			throw new IllegalArgumentException("The " + opponent + " opponent model treats symmetric games differently");
+		return new TransitionGraph(opponent, canonical);
+	}
+
+	final OpponentModel opponent;
+
+	final boolean canonical;
+
+	/**
+	 * the {@link Game#hashCode()} of each state
+	 */
+	final int[] codes;
+	final boolean[] terminal;
+
+	final int[] actionStart;
+	/**
+	 * the cell (x*3+y) each action plays in
+	 */
+	final byte[] actionCell;
+
+	final int[] transStart;
+	final int[] next;
+	final double[] prob;
+	final byte[] kind;
+
+	/**
+	 * The states that have a transition into each state, also CSR-like: those of state s are {@code pred[predStart[s]]}
+	 * to {@code pred[predStart[s+1]-1]}, each listed once.
+	 */
+	final int[] predStart;
+	final int[] pred;
+
+	/**
+	 * the states are looked up, evaluated and expanded through the catalogue
+	 */
+	private final StateCatalogue catalogue = StateCatalogue.get();
+
+	/**
+	 * catalogue index -> state index, -1 for valid games that aren't states of this graph
+	 */
+	private final int[] index = new int[catalogue.size()];
+
+	private TransitionGraph(OpponentModel opponent, boolean canonical) {
+		this.opponent = opponent;
+		this.canonical = canonical;
+
+		List<Game> games = new ArrayList<Game>();
+		Arrays.fill(index, -1);
+		for (Game g : Game.generateReachableGames('X')) {
+			if (canonical && !g.isCanonical())
+				continue;
+
+			index[catalogue.indexOf(g.hashCode())] = games.size();
+			games.add(g);
+		}
+		int n = games.size();
+		this.codes = new int[n];
+		for (int s = 0; s < n; s++)
+			codes[s] = games.get(s).hashCode();
+		this.terminal = new boolean[n];
+
+		// every state has at most 9 actions, each with at most 8 transitions
+		actionStart = new int[n + 1];
+		byte[] actionCell = new byte[9 * n];
+		int[] transStart = new int[9 * n + 1];
+		int[] next = new int[9 * 8 * n];
+		double[] prob = new double[9 * 8 * n];
+		byte[] kind = new byte[9 * 8 * n];
+
+		int a = 0;
+		int t = 0;
+		for (int s = 0; s < n; s++) {
+			actionStart[s] = a;
+			Game g = games.get(s);
+			int i = catalogue.indexOf(codes[s]);
+			terminal[s] = catalogue.isTerminal(i);
+
+			for (int moves = catalogue.legalMoves(i); moves != 0; moves &= moves - 1) {
+				int cell = Integer.numberOfTrailingZeros(moves);
+				actionCell[a] = (byte) cell;
+				transStart[a] = t;
+
+				// X plays, then (unless the game is over) O replies as the model says
+				g.makeMove(cell);
+				int j = catalogue.indexOf(g.hashCode());
+				if (catalogue.isTerminal(j)) {
+					next[t] = stateOf(g);
+					prob[t] = 1.0;
+					kind[t] = (catalogue.outcome(j) == Game.X_WON) ? WIN : DRAW;
+					t++;
+				} else {
+					double[] replies = TTTMDP.replies(opponent, g);
+					for (int empty = catalogue.legalMoves(j); empty != 0; empty &= empty - 1) {
+						int reply = Integer.numberOfTrailingZeros(empty);
+						if (replies[reply] == 0)
+							continue;
+
+						g.makeMove(reply);
+						next[t] = stateOf(g);
+						prob[t] = replies[reply];
+						int outcome = catalogue.outcome(catalogue.indexOf(g.hashCode()));
+						if (outcome == Game.O_WON)
+							kind[t] = LOSE;
+						else if (outcome == Game.DRAW)
+							kind[t] = DRAW;
+						else
+							kind[t] = LIVE;
+						t++;
+						g.unmakeMove();
+					}
+				}
+				g.unmakeMove();
+				a++;
+			}
+		}
+		actionStart[n] = a;
+		transStart[a] = t;
+
+		this.actionCell = Arrays.copyOf(actionCell, a);
+		this.transStart = Arrays.copyOf(transStart, a + 1);
+		this.next = Arrays.copyOf(next, t);
+		this.prob = Arrays.copyOf(prob, t);
+		this.kind = Arrays.copyOf(kind, t);
+
+		// count, then fill. last[u] is the latest state seen leading to u, which stops a state being listed twice, as
+		// each state's transitions are visited together
+		predStart = new int[n + 1];
+		int[] last = new int[n];
+		Arrays.fill(last, -1);
+		for (int s = 0; s < n; s++)
+			for (int u = this.transStart[actionStart[s]]; u < this.transStart[actionStart[s + 1]]; u++)
+				if (last[this.next[u]] != s) {
+					last[this.next[u]] = s;
+					predStart[this.next[u] + 1]++;
+				}
+		for (int s = 0; s < n; s++)
+			predStart[s + 1] += predStart[s];
+
+		pred = new int[predStart[n]];
+		int[] fill = Arrays.copyOf(predStart, n);
+		Arrays.fill(last, -1);
+		for (int s = 0; s < n; s++)
+			for (int u = this.transStart[actionStart[s]]; u < this.transStart[actionStart[s + 1]]; u++)
+				if (last[this.next[u]] != s) {
+					last[this.next[u]] = s;
+					pred[fill[this.next[u]]++] = s;
+				}
+	}
+
+	private int stateOf(Game g) {
+		int s = indexOf(g);
+		if (s < 0)
+			throw new IllegalStateException("Transition to a game that is not a state of the MDP:" + g);
+		return s;
+	}
+
+	/**
+	 * @return the number of states
+	 */
+	int size() {
+		return codes.length;
+	}
+
+	/**
+	 * @return the index of game {@code g} (or of its canonical form, if the graph is canonical), -1 if it isn't a
+	 *         state of the graph
+	 */
+	int indexOf(Game g) {
+		if (!g.shape.isClassic())
+			return -1;
+
+		int code = canonical ? Symmetry.canonicalCode(g.boardCode) * 3 + (g.hashCode() % 3) : g.hashCode();
+		int i = catalogue.indexOf(code);
+		return i < 0 ? -1 : index[i];
+	}
+
+	/**
+	 * @return a new, evaluated, Game for state {@code s}
+	 */
+	Game game(int s) {
+		return catalogue.game(catalogue.indexOf(codes[s]));
+	}
+
+	/**
+	 * @return the move made by action {@code a}
+	 */
+	Move move(int a) {
+		int cell = actionCell[a];
+		return Move.of('X', cell / 3, cell % 3);
+	}
+
+}
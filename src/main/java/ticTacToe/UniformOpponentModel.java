@@ -0,0 +1,40 @@
+package ticTacToe;
+
+/**
+ * An {@link OpponentModel} whose opponent picks uniformly at random from a set of cells, like all the built-in
+ * opponents. On the 3x3 board the sets come from table lookups (see {@link OpponentTables}).
+ */
+abstract class UniformOpponentModel implements OpponentModel {
+
+	private final String name;
+	private final boolean symmetric;
+
+	UniformOpponentModel(String name, boolean symmetric) {
+		this.name = name;
+		this.symmetric = symmetric;
+	}
+
+	/**
+	 * @param g a game that isn't over, where it's the opponent's turn
+	 * @return the (non-empty) set of cells the opponent picks from
+	 */
+	abstract long cells(Game g);
+
+	public double[] replies(Game g) {
+		double[] replies = new double[g.shape.cells];
+		long cells = cells(g);
+		double p = (double) 1 / Long.bitCount(cells);
+		for (; cells != 0; cells &= cells - 1)
+			replies[Long.numberOfTrailingZeros(cells)] = p;
+		return replies;
+	}
+
+	public boolean isSymmetric() {
+		return symmetric;
+	}
+
+	public String toString() {
+		return name;
+	}
+
+}
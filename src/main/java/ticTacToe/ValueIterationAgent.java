@@ -2,9 +2,11 @@ package ticTacToe;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A Value Iteration Agent, only very partially implemented. The methods to implement are: 
@@ -38,6 +40,146 @@ public class ValueIterationAgent extends Agent {
 	 */
 	int k=10;
 	
+	/**
+	 * If true, only canonical games (see {@link Game#canonical()}) are stored in {@link ValueIterationAgent#valueFunction}, 
+	 * which makes it roughly 8 times smaller. Successor games are looked up through their canonical form.
+	 */
+	boolean canonical=false;
+	
+	/**
+	 * The ways {@link ValueIterationAgent#train} can solve the MDP
+	 */
+	public enum Engine
+	{
+		/**
+		 * {@link ValueIterationAgent#iterate}, on maps of {@link Game}s
+		 */
+		MAPS,
+		/**
+		 * {@link DenseValueIteration}, on the compiled MDP (see {@link TTTMDP#compile()}); 
+		 * {@link ValueIterationAgent#valueFunction} is only filled in at the end
+		 */
+		DENSE
+	}
+	
+	/**
+	 * The settings of a {@link ValueIterationAgent}, each set by name so that they can't be mixed up, e.g. 
+	 * {@code new ValueIterationAgent(new ValueIterationAgent.Options().engine(Engine.DENSE).epsilon(1e-6))}. 
+	 * Settings that aren't set keep the defaults of the agent's fields.
+	 */
+	public static class Options
+	{
+		double discount=0.9;
+		boolean canonical=false;
+		Engine engine=Engine.MAPS;
+		int parallelism=1;
+		double epsilon=0;
+		int maxSweeps=1000;
+		boolean gaussSeidel=false;
+		OpponentModel opponent=OpponentModel.RANDOM;
+		
+		public Options discount(double discount)
+		{
+			this.discount=discount;
+			return this;
+		}
+		
+		/**
+		 * see {@link ValueIterationAgent#canonical}
+		 */
+		public Options canonical(boolean canonical)
+		{
+			this.canonical=canonical;
+			return this;
+		}
+		
+		public Options engine(Engine engine)
+		{
+			if (engine==null)
+				throw new IllegalArgumentException("The engine can't be null");
+			this.engine=engine;
+			return this;
+		}
+		
+		/**
+		 * see {@link ValueIterationAgent#parallelism}; the dense engine only
+		 */
+		public Options parallelism(int parallelism)
+		{
+			if (parallelism<1)
+				throw new IllegalArgumentException("parallelism should be at least 1");
+			this.parallelism=parallelism;
+			return this;
+		}
+		
+		/**
+		 * see {@link ValueIterationAgent#epsilon}; the dense engine only
+		 */
+		public Options epsilon(double epsilon)
+		{
+			if (epsilon<=0)
+				throw new IllegalArgumentException("epsilon should be greater than 0");
+			this.epsilon=epsilon;
+			return this;
+		}
+		
+		/**
+		 * see {@link ValueIterationAgent#maxSweeps}
+		 */
+		public Options maxSweeps(int maxSweeps)
+		{
+			if (maxSweeps<1)
+				throw new IllegalArgumentException("maxSweeps should be at least 1");
+			this.maxSweeps=maxSweeps;
+			return this;
+		}
+		
+		/**
+		 * see {@link ValueIterationAgent#gaussSeidel}
+		 */
+		public Options gaussSeidel(boolean gaussSeidel)
+		{
+			this.gaussSeidel=gaussSeidel;
+			return this;
+		}
+		
+		public Options opponent(OpponentModel opponent)
+		{
+			this.opponent=opponent;
+			return this;
+		}
+	}
+	
+	/**
+	 * how {@link ValueIterationAgent#train} solves the MDP
+	 */
+	Engine engine=Engine.MAPS;
+	
+	/**
+	 * The number of threads the dense engine sweeps with. The values and the policy are the same whatever this is 
+	 * set to.
+	 */
+	int parallelism=1;
+	
+	/**
+	 * If greater than 0, the dense engine does not do {@link ValueIterationAgent#k} sweeps, but sweeps until the 
+	 * largest change of any state's value in a sweep (the Bellman residual) is below epsilon, or until it has done 
+	 * {@link ValueIterationAgent#maxSweeps} sweeps.
+	 */
+	double epsilon=0;
+	int maxSweeps=1000;
+	
+	/**
+	 * If true, sweeps until convergence (see {@link ValueIterationAgent#epsilon}) update the values in place 
+	 * (Gauss-Seidel), on one thread.
+	 */
+	boolean gaussSeidel=false;
+	
+	/**
+	 * the residual of each sweep done by {@link ValueIterationAgent#train}
+	 */
+	List<Double> residualHistory=new ArrayList<Double>();
+	
 	
 	/**
 	 * This constructor trains the agent offline first and sets its policy
@@ -69,19 +211,72 @@ public class ValueIterationAgent extends Agent {
 		train();
 	}
 	
+	/**
+	 * Use this constructor to solve the MDP against an opponent that replies as {@code opponent} says, e.g. 
+	 * {@link OpponentModel#DEFENSIVE} to play best against the {@link DefensiveAgent}.
+	 * @param discountFactor
+	 * @param opponent
+	 */
+	public ValueIterationAgent(double discountFactor, OpponentModel opponent) {
+		
+		this.discount=discountFactor;
+		mdp=new TTTMDP(opponent);
+		initValues();
+		train();
+	}
+	
+	/**
+	 * Use this constructor to solve the MDP over canonical games only, if {@code canonical} is true.
+	 * @param discountFactor
+	 * @param canonical
+	 */
+	public ValueIterationAgent(double discountFactor, boolean canonical) {
+		
+		this.discount=discountFactor;
+		this.canonical=canonical;
+		mdp=new TTTMDP();
+		initValues();
+		train();
+	}
+	
+	/**
+	 * Use this constructor to choose how the MDP is solved, see {@link Options}.
+	 * @param options
+	 */
+	public ValueIterationAgent(Options options) {
+		
+		if (options.engine==Engine.MAPS && (options.parallelism>1 || options.epsilon>0))
+			throw new IllegalArgumentException("Only the dense engine runs in parallel, or until it converges");
+		if (options.gaussSeidel && options.epsilon==0)
+			throw new IllegalArgumentException("Gauss-Seidel sweeps need an epsilon to stop at");
+		
+		this.discount=options.discount;
+		this.canonical=options.canonical;
+		this.engine=options.engine;
+		this.parallelism=options.parallelism;
+		this.epsilon=options.epsilon;
+		this.maxSweeps=options.maxSweeps;
+		this.gaussSeidel=options.gaussSeidel;
+		mdp=new TTTMDP(options.opponent);
+		if (engine==Engine.MAPS)
+			initValues();
+		train();
+	}
+	
 	/**
 	 * Initialises the {@link ValueIterationAgent#valueFunction} map, 
 	 * and sets the initial value of all states to 0 
-	 * (V0 from the lectures). Uses {@link Game#inverseHash} and 
-	 * {@link Game#generateAllValidGames(char)} to do this. 
+	 * (V0 from the lectures). Uses {@link Game#generateReachableGames(char)} 
+	 * to do this. 
 	 * 
 	 */
 	public void initValues()
 	{
 		
-		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
+		List<Game> allGames=Game.generateReachableGames('X');//all games that can come up where it is X's turn, or it's terminal.
 		for(Game g: allGames)
-			this.valueFunction.put(g, 0.0);
+			if (!canonical || g.isCanonical())
+				this.valueFunction.put(g, 0.0);
 		
 		
 		
@@ -125,6 +320,9 @@ public class ValueIterationAgent extends Agent {
 		//iterate k times
 		for (int i=0; i<k; i++) { 
 			
+			//the largest change of any value in this sweep
+			double residual=0;
+			
 			//iterating through each game in value function
 			for (Map.Entry<Game, Double> game : valueFunction.entrySet()) {
 				
@@ -151,7 +349,7 @@ public class ValueIterationAgent extends Agent {
 					for (TransitionProb t_item : tp) {
 						//calculate q values
 						//QValue = Transition (Reward + Discount*Value_of_destination_state)
-						val += t_item.prob * ( t_item.outcome.localReward + discount*valueFunction.get(t_item.outcome.sPrime));	
+						val += t_item.prob * ( t_item.outcome.localReward + discount*valueOf(t_item.outcome.sPrime));	
 					}
 					
 					//mapping move to value
@@ -181,10 +379,12 @@ public class ValueIterationAgent extends Agent {
 				}
 				
 				//update valueFunction with new value
+				residual=Math.max(residual, Math.abs(max_val-game.getValue()));
 				valueFunction.replace(game.getKey(), max_val);
 				
 				
 			}
+			residualHistory.add(residual);
 		}
 			
 		
@@ -228,7 +428,7 @@ public class ValueIterationAgent extends Agent {
 
 					//calculate q values
 					//QValue = Transition (Reward + Discount*Value_of_destination_state)
-					val += t_item.prob * ( t_item.outcome.localReward + discount*valueFunction.get(t_item.outcome.sPrime));	
+					val += t_item.prob * ( t_item.outcome.localReward + discount*valueOf(t_item.outcome.sPrime));	
 				}
 				
 				//adding the Q values to a list 
@@ -257,17 +457,76 @@ public class ValueIterationAgent extends Agent {
 			
 		}
 		
-		return new Policy(policy);
+		return new Policy(policy, canonical, true);
 
 	}
 	
 	
+	/**
+	 * @param g
+	 * @return the current value of {@code g}, looked up through its canonical form if the agent is {@link ValueIterationAgent#canonical}
+	 */
+	double valueOf(Game g)
+	{
+		return valueFunction.get(canonical?g.canonical():g);
+	}
+	
+	/**
+	 * @param g a game reachable in play
+	 * @return the value of {@code g}, once the agent is trained
+	 */
+	public double getValue(Game g)
+	{
+		return valueOf(g);
+	}
+	
+	/**
+	 * @return the Bellman residual (the largest change of any state's value) of each sweep done in training, in order
+	 */
+	public List<Double> getResidualHistory()
+	{
+		return Collections.unmodifiableList(residualHistory);
+	}
+	
+	/**
+	 * @return the number of sweeps done in training
+	 */
+	public int getSweepsUsed()
+	{
+		return residualHistory.size();
+	}
+	
 	/**
 	 * This method solves the mdp using your implementation of {@link ValueIterationAgent#extractPolicy} and
 	 * {@link ValueIterationAgent#iterate}. 
 	 */
 	public void train()
 	{
+		if (engine==Engine.DENSE)
+		{
+			//the same steps, on arrays
+			ForkJoinPool pool=(parallelism>1)?new ForkJoinPool(parallelism):null;
+			try
+			{
+				DenseValueIteration solver=new DenseValueIteration(mdp.compile(canonical), discount, pool);
+				if (epsilon>0)
+					solver.solve(epsilon, maxSweeps, gaussSeidel);
+				else
+					solver.iterate(k);
+				
+				for(double r: solver.residualHistory())
+					residualHistory.add(r);
+				this.valueFunction=solver.valueFunction();
+				super.policy=solver.extractPolicy();
+			}
+			finally
+			{
+				if (pool!=null)
+					pool.shutdown();
+			}
+			return;
+		}
+		
 		/**
 		 * First run value iteration
 		 */
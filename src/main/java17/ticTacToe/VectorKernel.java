@@ -0,0 +1,68 @@
+package ticTacToe;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link BellmanKernel} on the incubating Vector API (JDK 16+, run with {@code --add-modules jdk.incubator.vector}).
+ * It is compiled separately, for Java 17, and only loaded through {@link BellmanKernel#select()}, so the rest of the
+ * code still runs on Java 8.
+ *
+ * A single action's transitions are gathered {@link #SPECIES}.length() at a time and summed lane-wise, then across
+ * lanes. Over a matrix of configurations every lane is a configuration, and each lane does the same operations, in
+ * the same order, as {@link BellmanKernel#SCALAR}.
+ */
+final class VectorKernel extends BellmanKernel {
+
+	static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	double qValue(TransitionGraph g, double[] reward, int a, double[] v, double discount) {
+		int[] next = g.next;
+		double[] prob = g.prob;
+		int t = g.transStart[a];
+		int end = g.transStart[a + 1];
+		int lanes = SPECIES.length();
+
+		double q = 0;
+		if (end - t >= lanes) {
+			DoubleVector sum = DoubleVector.zero(SPECIES);
+			for (; t + lanes <= end; t += lanes) {
+				DoubleVector values = DoubleVector.fromArray(SPECIES, v, 0, next, t);
+				DoubleVector rewards = DoubleVector.fromArray(SPECIES, reward, t);
+				sum = sum.add(DoubleVector.fromArray(SPECIES, prob, t).mul(rewards.add(values.mul(discount))));
+			}
+			q = sum.reduceLanes(VectorOperators.ADD);
+		}
+		for (; t < end; t++)
+			q += prob[t] * (reward[t] + discount * v[next[t]]);
+		return q;
+	}
+
+	void qValues(TransitionGraph g, double[] rewards, double[] discounts, int a, double[] v, int width, int from,
+			int to, double[] q) {
+		int upper = from + SPECIES.loopBound(to - from);
+		for (int c = from; c < to; c++)
+			q[c] = 0;
+
+		for (int t = g.transStart[a]; t < g.transStart[a + 1]; t++) {
+			double p = g.prob[t];
+			int rewardRow = g.kind[t] * width;
+			int nextRow = g.next[t] * width;
+			int c = from;
+			for (; c < upper; c += SPECIES.length()) {
+				DoubleVector r = DoubleVector.fromArray(SPECIES, rewards, rewardRow + c);
+				DoubleVector d = DoubleVector.fromArray(SPECIES, discounts, c);
+				DoubleVector next = DoubleVector.fromArray(SPECIES, v, nextRow + c);
+				DoubleVector.fromArray(SPECIES, q, c).add(r.add(d.mul(next)).mul(p)).intoArray(q, c);
+			}
+			for (; c < to; c++)
+				q[c] += p * (rewards[rewardRow + c] + discounts[c] * v[nextRow + c]);
+		}
+	}
+
+	String name() {
+		return "vector";
+	}
+
+}
@@ -0,0 +1,74 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.BatchSolver;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.Policy;
+import ticTacToe.RetrogradeAgent;
+
+public class TestBatchSolver {
+
+	static List<BatchSolver.Configuration> configurations() {
+		List<BatchSolver.Configuration> configurations=new ArrayList<BatchSolver.Configuration>();
+		configurations.add(new BatchSolver.Configuration(0.9, 10, -50, -1, 0));
+		configurations.add(new BatchSolver.Configuration(0.5, 10, -50, -1, 0));
+		configurations.add(new BatchSolver.Configuration(0.99, 1, -1, 0, 0));
+		configurations.add(new BatchSolver.Configuration(0.9, 10, -10, 1, 5));
+		configurations.add(new BatchSolver.Configuration(0.7, 5, -100, -2, 1));
+		return configurations;
+	}
+
+	@Test
+	public void testSameAsRetrograde() {
+		List<BatchSolver.Configuration> configurations=configurations();
+		BatchSolver batch=new BatchSolver(configurations);
+		List<Policy> policies=batch.solve();
+		assertEquals(configurations.size(), policies.size());
+
+		List<Game> games=Game.generateReachableGames('X');
+		for (int c=0; c<configurations.size(); c++)
+		{
+			BatchSolver.Configuration conf=configurations.get(c);
+			RetrogradeAgent single=new RetrogradeAgent(conf.discount, conf.winReward, conf.loseReward, conf.livingReward, conf.drawReward);
+			//the kernel may add up single actions in another order than configurations, so tied moves can differ
+			for (Game g: games)
+				if (!g.isTerminal())
+					assertEquals(conf+" "+g, single.getValue(g), batch.getValue(c, g), 1e-9);
+		}
+	}
+
+	@Test
+	public void testParallel() {
+		List<BatchSolver.Configuration> configurations=configurations();
+		BatchSolver sequential=new BatchSolver(configurations, true);
+		BatchSolver parallel=new BatchSolver(configurations, true);
+		List<Policy> expected=sequential.solve();
+		List<Policy> actual=parallel.solve(3);
+
+		//compare the values of every non-terminal state, i.e. of every game the policies have a move for
+		for (Game g: Game.generateReachableGames('X'))
+			if (!g.isTerminal() && expected.get(0).getMove(g)!=null)
+				for (int c=0; c<configurations.size(); c++)
+				{
+					assertEquals(expected.get(c).getMove(g), actual.get(c).getMove(g));
+					assertEquals(sequential.getValue(c, g), parallel.getValue(c, g), 0);
+				}
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Batch solved policies, against Defensive Agent:");
+		//the first configuration is the default one
+		Policy p=new BatchSolver(configurations()).solve(2).get(0);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new Agent(p), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
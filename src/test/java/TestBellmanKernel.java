@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ticTacToe.BatchSolver;
+import ticTacToe.Game;
+import ticTacToe.Policy;
+import ticTacToe.ValueIterationAgent;
+import ticTacToe.ValueIterationAgent.Engine;
+import ticTacToe.ValueIterationAgent.Options;
+
+public class TestBellmanKernel {
+
+	static final Game[] GAMES=Game.generateReachableGames('X').toArray(new Game[0]);
+
+	/**
+	 * what one kernel came up with: the values and policy of dense value iteration first, then those of a batch solve
+	 * of three configurations
+	 */
+	static class Solution {
+		String kernel;
+		List<double[]> values=new ArrayList<double[]>();
+		List<Policy> policies=new ArrayList<Policy>();
+	}
+
+	static Solution solveWith(String kernel) {
+		String old=System.getProperty("ticTacToe.kernel");
+		System.setProperty("ticTacToe.kernel", kernel);
+		try {
+			Solution solution=new Solution();
+			ValueIterationAgent dense=new ValueIterationAgent(new Options().engine(Engine.DENSE));
+			double[] v=new double[GAMES.length];
+			for (int i=0; i<GAMES.length; i++)
+				v[i]=dense.getValue(GAMES[i]);
+			solution.values.add(v);
+			solution.policies.add(dense.getPolicy());
+
+			List<BatchSolver.Configuration> configurations=new ArrayList<BatchSolver.Configuration>();
+			configurations.add(new BatchSolver.Configuration(0.9, 10, -50, -1, 0));
+			configurations.add(new BatchSolver.Configuration(0.99, 1, -1, 0, 0));
+			configurations.add(new BatchSolver.Configuration(0.7, 5, -100, -2, 1));
+			BatchSolver batch=new BatchSolver(configurations);
+			solution.kernel=batch.getKernel();
+			solution.policies.addAll(batch.solve());
+			for (int c=0; c<configurations.size(); c++) {
+				v=new double[GAMES.length];
+				for (int i=0; i<GAMES.length; i++)
+					v[i]=batch.getValue(c, GAMES[i]);
+				solution.values.add(v);
+			}
+			return solution;
+		}
+		finally {
+			if (old==null)
+				System.clearProperty("ticTacToe.kernel");
+			else
+				System.setProperty("ticTacToe.kernel", old);
+		}
+	}
+
+	/**
+	 * Single actions are summed in different orders, so dense values agree to rounding; batch values are
+	 * bit-identical. Either way the policies are the same.
+	 */
+	static void assertSameAsScalar(Solution solution) {
+		Solution scalar=solveWith("scalar");
+		assertEquals("scalar", scalar.kernel);
+		for (int i=0; i<GAMES.length; i++) {
+			assertEquals(solution.kernel + " " + GAMES[i], scalar.values.get(0)[i], solution.values.get(0)[i], 1e-9);
+			for (int c=1; c<solution.values.size(); c++)
+				assertEquals(solution.kernel + " " + GAMES[i], scalar.values.get(c)[i], solution.values.get(c)[i], 0);
+
+			if (GAMES[i].isTerminal())
+				continue;
+			for (int c=0; c<solution.policies.size(); c++)
+				assertEquals(solution.kernel + " " + GAMES[i], scalar.policies.get(c).getMove(GAMES[i]),
+						solution.policies.get(c).getMove(GAMES[i]));
+		}
+	}
+
+	@Test
+	public void testBlocked() {
+		Solution blocked=solveWith("blocked");
+		assertEquals("blocked", blocked.kernel);
+		assertSameAsScalar(blocked);
+	}
+
+	/**
+	 * only runs where the Vector API kernel loads (JDK 16+ with the jdk.incubator.vector module), otherwise "vector"
+	 * falls back to the scalar kernel
+	 */
+	@Test
+	public void testVector() {
+		Solution vector=solveWith("vector");
+		assumeTrue(vector.kernel.equals("vector"));
+		assertSameAsScalar(vector);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownKernel() {
+		solveWith("avx512");
+	}
+
+}
@@ -0,0 +1,70 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.MCTSAgent;
+import ticTacToe.MinimaxAgent;
+import ticTacToe.RandomAgent;
+
+public class TestMCTSAgent {
+	@Test
+	public void testDefensive() {
+		System.out.println("Against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new MCTSAgent(5000), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testAggressive() {
+		System.out.println("Against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new MCTSAgent(5000), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testParallel() {
+		System.out.println("4 threads, as O against Minimax Agent, both starting:");
+		MCTSAgent agent=new MCTSAgent(5000, 1000, 4);
+		MinimaxAgent m=new MinimaxAgent();
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(m, agent, m, 10);
+		int[] more=TestPolicyIterationAgent.playAgainstEachOther(m, agent, agent, 10);
+		
+		System.out.println("Wins: " + (results[1]+more[1]) + " Losses: " + (results[0]+more[0]) + " Draws: " + (results[2]+more[2]));
+		assertEquals(0, results[0]+more[0]);
+		assertTrue(agent.getLastIterations()>0);
+		
+
+	}
+	
+	@Test
+	public void testLargeBoard() throws IllegalMoveException {
+		System.out.println("5,5,4 board, 2 threads, against Random Agent:");
+		MCTSAgent agent=new MCTSAgent(3000, 200, 2);
+		RandomAgent r=new RandomAgent();
+		int losses=0;
+		for (int i=0; i<10; i++)
+		{
+			Game g=new Game(agent, r, agent, 5, 5, 4);
+			g.playOut();
+			if (g.getState()==Game.O_WON)
+				losses++;
+		}
+		System.out.println("Losses: " + losses);
+		assertEquals(0, losses);
+		
+
+	}
+
+}
@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.MinimaxAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RetrogradeAgent;
+
+public class TestMinimaxAgent {
+	@Test
+	public void testDefensive() {
+		System.out.println("Against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new MinimaxAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testAggressive() {
+		System.out.println("Against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new MinimaxAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	
+	@Test
+	public void testRandom() {
+		System.out.println("Against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new MinimaxAgent(), new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testAsO() {
+		System.out.println("As O against Retrograde Agent, both starting:");
+		MinimaxAgent agent=new MinimaxAgent(false);
+		RetrogradeAgent r=new RetrogradeAgent();
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(r, agent, r, 25);
+		int[] more=TestPolicyIterationAgent.playAgainstEachOther(r, agent, agent, 25);
+		
+		System.out.println("Wins: " + (results[1]+more[1]) + " Losses: " + (results[0]+more[0]) + " Draws: " + (results[2]+more[2]));
+		assertEquals(0, results[0]+more[0]);
+		
+
+	}
+	
+	@Test
+	public void testSelfPlay() {
+		//perfect play from both sides is a draw, whoever starts
+		MinimaxAgent x=new MinimaxAgent();
+		MinimaxAgent o=new MinimaxAgent(false);
+		assertEquals(0, x.getScore(new Game()));
+		assertEquals(0, o.getScore(new Game('O')));
+		assertEquals(1, TestPolicyIterationAgent.playAgainstEachOther(x, o, x, 1)[2]);
+		assertEquals(1, TestPolicyIterationAgent.playAgainstEachOther(x, o, o, 1)[2]);
+		
+
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testOtherBoard() {
+		MinimaxAgent x=new MinimaxAgent();
+		x.getMove(new Game(x, new RandomAgent(), x, 4, 4, 4));
+	}
+
+}
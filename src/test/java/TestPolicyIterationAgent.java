@@ -12,7 +12,10 @@ import ticTacToe.DefensiveAgent;
 import ticTacToe.Game;
 import ticTacToe.IllegalMoveException;
 import ticTacToe.PolicyIterationAgent;
+import ticTacToe.PolicyIterationAgent.Engine;
+import ticTacToe.PolicyIterationAgent.Options;
 import ticTacToe.RandomAgent;
+import ticTacToe.RetrogradeAgent;
 
 public class TestPolicyIterationAgent {
 
@@ -24,6 +27,19 @@ public class TestPolicyIterationAgent {
 	 * @return list of results: [xWon, oWon, draw]
 	 */
 	public static int[] playAgainstEachOther(Agent a1, Agent a2, int howmanyTimes)
+	{
+		return playAgainstEachOther(a1, a2, a1, howmanyTimes);
+	}
+	
+	/**
+	 * 
+	 * @param a1 the X agent
+	 * @param a2 the O agent
+	 * @param first the agent that starts, a1 or a2
+	 * @param howmanyTimes
+	 * @return list of results: [xWon, oWon, draw]
+	 */
+	public static int[] playAgainstEachOther(Agent a1, Agent a2, Agent first, int howmanyTimes)
 	{
 		
 		Game gn;
@@ -35,7 +51,7 @@ public class TestPolicyIterationAgent {
 
 		
 		for (int i=0;i<howmanyTimes;i++) {
-			gn = new Game(a1, a2, a1);
+			gn = new Game(a1, a2, first);
 			try {
 				gn.playOut();
 			}
@@ -111,5 +127,165 @@ public class TestPolicyIterationAgent {
 		
 
 	}
+	
+	@Test
+	public void testCanonical() {
+		System.out.println("Canonical states only, against Defensive Agent:");
+		int[] results=playAgainstEachOther(new PolicyIterationAgent(0.9, true), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testModified() {
+		System.out.println("At most 2 evaluation sweeps per round, against Defensive Agent:");
+		int[] results=playAgainstEachOther(new PolicyIterationAgent(new Options().maxEvaluationSweeps(2)), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testDense() {
+		System.out.println("Dense engine, at most 2 evaluation sweeps per round, against Defensive Agent:");
+		int[] results=playAgainstEachOther(new PolicyIterationAgent(new Options().engine(Engine.DENSE).maxEvaluationSweeps(2)), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testParallel() {
+		System.out.println("Dense engine on 4 threads, against Defensive Agent:");
+		PolicyIterationAgent parallel=new PolicyIterationAgent(new Options().engine(Engine.DENSE).parallelism(4));
+		PolicyIterationAgent sequential=new PolicyIterationAgent(new Options().engine(Engine.DENSE));
+		for (Game g: Game.generateReachableGames('X'))
+			if (!g.isTerminal())
+				assertEquals(g.toString(), sequential.getPolicy().getMove(g), parallel.getPolicy().getMove(g));
+		assertEquals(sequential.getEvaluationSweeps(), parallel.getEvaluationSweeps());
+		
+		int[] results=playAgainstEachOther(parallel, new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testSparse() {
+		System.out.println("Sparse engine, exact and on 4 threads, against Defensive Agent:");
+		PolicyIterationAgent exact=new PolicyIterationAgent(new Options().engine(Engine.SPARSE).exactEvaluation(true));
+		PolicyIterationAgent iterative=new PolicyIterationAgent(new Options().engine(Engine.SPARSE).parallelism(4));
+		//one back substitution per policy, instead of products until the values converge
+		assertTrue(exact.getEvaluationSweeps()<iterative.getEvaluationSweeps());
+		
+		//the rows patched in place give the optimal values, and fewer rows were written than in a single assembly
+		RetrogradeAgent optimal=new RetrogradeAgent(0.9);
+		int states=0;
+		for (Game g: Game.generateReachableGames('X'))
+			if (!g.isTerminal())
+			{
+				states++;
+				assertEquals(g.toString(), optimal.getValue(g), exact.getValue(g), 1e-9);
+			}
+		System.out.println(exact.getImprovements()+" improvements, "+exact.getRowsPatched()+" rows patched");
+		assertTrue(exact.getRowsPatched()>0);
+		assertTrue(exact.getRowsPatched()<states);
+		
+		int[] results=playAgainstEachOther(exact, new DefensiveAgent(), 50);
+		System.out.println("Exact - Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+		results=playAgainstEachOther(iterative, new DefensiveAgent(), 50);
+		System.out.println("Iterative - Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	/**
+	 * Improvement only looks again at the states whose best move may have changed, and evaluation only at the states 
+	 * whose value may have changed, so both do less than full passes over all states
+	 */
+	@Test
+	public void testSkipsUnchangedStates() {
+		int states=0;
+		long moves=0;
+		for (Game g: Game.generateReachableGames('X'))
+			if (!g.isTerminal())
+			{
+				states++;
+				moves+=g.getPossibleMoves().size();
+			}
+		
+		for (Engine engine: new Engine[] {Engine.MAPS, Engine.DENSE})
+		{
+			PolicyIterationAgent agent=new PolicyIterationAgent(new Options().engine(engine));
+			System.out.println(engine+": "+agent.getImprovements()+" improvements, "+agent.getImprovementBackups()+" Q-values, "
+					+agent.getEvaluationSweeps()+" evaluation sweeps, "+agent.getEvaluationBackups()+" values");
+			assertTrue(agent.getImprovements()>1);
+			assertTrue(agent.getImprovementBackups()<agent.getImprovements()*moves);
+			assertTrue(agent.getEvaluationBackups()<(long)agent.getEvaluationSweeps()*states);
+		}
+	}
+	
+	/**
+	 * records the evaluation work of each round of policy iteration
+	 */
+	static class CountingAgent extends PolicyIterationAgent
+	{
+		List<long[]> rounds;
+		
+		CountingAgent()
+		{
+			super(new Options().engine(Engine.MAPS));
+		}
+		
+		@Override
+		protected boolean evaluatePolicy(double delta)
+		{
+			if (rounds==null)
+				rounds=new ArrayList<long[]>();
+			
+			long sweeps=getEvaluationSweeps(), backups=getEvaluationBackups();
+			boolean converged=super.evaluatePolicy(delta);
+			rounds.add(new long[] {getEvaluationSweeps()-sweeps, getEvaluationBackups()-backups});
+			return converged;
+		}
+	}
+	
+	/**
+	 * The first sweep of the map engine updates every state; after that only the states whose move changed, and 
+	 * those depending on states whose value changed, are updated, so the later rounds of evaluation do far less per 
+	 * sweep than the first
+	 */
+	@Test
+	public void testMapsEvaluationShrinks() {
+		int states=0;
+		for (Game g: Game.generateReachableGames('X'))
+			if (!g.isTerminal())
+				states++;
+		
+		CountingAgent agent=new CountingAgent();
+		assertTrue(agent.rounds.size()>1);
+		assertTrue(agent.rounds.get(0)[1]>=states);
+		
+		long sweeps=0, backups=0;
+		for (long[] round: agent.rounds.subList(1, agent.rounds.size()))
+		{
+			assertTrue(round[1]<round[0]*states);
+			sweeps+=round[0];
+			backups+=round[1];
+		}
+		System.out.println("MAPS evaluation: "+agent.rounds.get(0)[1]/agent.rounds.get(0)[0]+" values per sweep in the "
+				+"first round, "+backups/sweeps+" after");
+		assertTrue(backups<sweeps*states/2);
+	}
 
 }
@@ -0,0 +1,75 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.RandomAgent;
+import ticTacToe.RTDPAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestRTDPAgent {
+	@Test
+	public void testDefensive() {
+		System.out.println("Against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RTDPAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testAggressive() {
+		System.out.println("Against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RTDPAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	
+	@Test
+	public void testRandom() {
+		System.out.println("Against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RTDPAgent(), new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	/**
+	 * RTDP only backs up the states the greedy policy can reach, so it solves the start state with fewer backups than 
+	 * there are valid states, let alone the full sweeps of value iteration
+	 */
+	@Test
+	public void testFewerBackupsThanValueIteration() {
+		int valid=Game.generateAllValidGames('X').size();
+		int states=0;
+		for (Game g: Game.generateReachableGames('X'))
+			if (!g.isTerminal())
+				states++;
+		
+		RTDPAgent rtdp=new RTDPAgent();
+		ValueIterationAgent vi=new ValueIterationAgent();
+		System.out.println("RTDP: "+rtdp.getBackups()+" backups in "+rtdp.getTrials()+" trials, value iteration: "
+				+(long)vi.getSweepsUsed()*states+", valid states: "+valid);
+		assertTrue(rtdp.getBackups()<valid);
+		assertTrue(rtdp.getBackups()<(long)vi.getSweepsUsed()*states);
+	}
+	
+	@Test
+	public void testLargerBoard() {
+		RTDPAgent rtdp=new RTDPAgent(0.9, 3, 4, 3);
+		Game start=new Game(3, 4, 3);
+		assertTrue(rtdp.isSolved(start));
+		assertTrue(start.isLegal(rtdp.getMove(start)));
+	}
+
+}
@@ -0,0 +1,85 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.OpponentModel;
+import ticTacToe.RandomAgent;
+import ticTacToe.RetrogradeAgent;
+
+public class TestRetrogradeAgent {
+	@Test
+	public void testDefensive() {
+		System.out.println("Against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RetrogradeAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testAggressive() {
+		System.out.println("Against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RetrogradeAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	
+	@Test
+	public void testRandom() {
+		System.out.println("Against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RetrogradeAgent(), new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testCanonical() {
+		System.out.println("Canonical states only, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RetrogradeAgent(0.9, true), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testAsO() {
+		RetrogradeAgent agent=new RetrogradeAgent();
+		DefensiveAgent d=new DefensiveAgent();
+		
+		System.out.println("As O against Defensive Agent, X starting:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(d, agent, d, 50);
+		System.out.println("Wins: " + results[1] + " Losses: " + results[0] + " Draws: " + results[2]);
+		assertEquals(0, results[0]);
+		
+		System.out.println("As O against Defensive Agent, O starting:");
+		results=TestPolicyIterationAgent.playAgainstEachOther(d, agent, agent, 50);
+		System.out.println("Wins: " + results[1] + " Losses: " + results[0] + " Draws: " + results[2]);
+		assertEquals(0, results[0]);
+		
+
+	}
+
+	@Test
+	public void testOpponentModel() {
+		System.out.println("Solved against the aggressive opponent model, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RetrogradeAgent(0.9, OpponentModel.AGGRESSIVE), new AggressiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+}
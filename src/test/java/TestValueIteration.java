@@ -1,11 +1,21 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
 import ticTacToe.AggressiveAgent;
 import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.OpponentModel;
 import ticTacToe.RandomAgent;
+import ticTacToe.RetrogradeAgent;
 import ticTacToe.ValueIterationAgent;
+import ticTacToe.ValueIterationAgent.Engine;
+import ticTacToe.ValueIterationAgent.Options;
 
 public class TestValueIteration {
 	@Test
@@ -40,5 +50,148 @@ public class TestValueIteration {
 		
 
 	}
+	
+	@Test
+	public void testCanonical() {
+		System.out.println("Canonical states only, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new ValueIterationAgent(0.9, true), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testDense() {
+		System.out.println("Dense engine, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new ValueIterationAgent(new Options().engine(Engine.DENSE)), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	/**
+	 * Every value is computed by the same arithmetic whichever thread does it, so splitting the sweeps across threads 
+	 * gives bit-identical values, and the same policy
+	 */
+	@Test
+	public void testParallel() {
+		ValueIterationAgent sequential=new ValueIterationAgent(new Options().engine(Engine.DENSE).parallelism(1));
+		ValueIterationAgent parallel=new ValueIterationAgent(new Options().engine(Engine.DENSE).parallelism(4));
+		assertEquals(sequential.getResidualHistory(), parallel.getResidualHistory());
+		for (Game g: Game.generateReachableGames('X'))
+		{
+			assertEquals(g.toString(), Double.doubleToLongBits(sequential.getValue(g)), Double.doubleToLongBits(parallel.getValue(g)));
+			if (!g.isTerminal())
+				assertEquals(g.toString(), sequential.getMove(g), parallel.getMove(g));
+		}
+		
+		System.out.println("Dense engine on 4 threads, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(parallel, new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testGaussSeidel() {
+		System.out.println("In-place sweeps to convergence, against Defensive Agent:");
+		ValueIterationAgent agent=new ValueIterationAgent(new Options().engine(Engine.DENSE).epsilon(1e-6).maxSweeps(100).gaussSeidel(true));
+		List<Double> residuals=agent.getResidualHistory();
+		System.out.println("Sweeps: " + agent.getSweepsUsed() + " Residuals: " + residuals);
+		assertEquals(residuals.size(), agent.getSweepsUsed());
+		assertTrue(residuals.get(residuals.size()-1) < 1e-6);
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testAsO() {
+		System.out.println("As O against Aggressive Agent, both starting:");
+		ValueIterationAgent agent=new ValueIterationAgent();
+		AggressiveAgent a=new AggressiveAgent();
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(a, agent, a, 25);
+		int[] more=TestPolicyIterationAgent.playAgainstEachOther(a, agent, agent, 25);
+		
+		System.out.println("Wins: " + (results[1]+more[1]) + " Losses: " + (results[0]+more[0]) + " Draws: " + (results[2]+more[2]));
+		assertEquals(0, results[0]+more[0]);
+		
+
+	}
+
+	@Test
+	public void testOpponentModel() {
+		System.out.println("Solved against the defensive opponent model, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new ValueIterationAgent(0.9, OpponentModel.DEFENSIVE), new DefensiveAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	/**
+	 * Models that aren't a distribution over the opponent's moves: one that also plays in occupied cells, and one
+	 * whose probabilities don't add up to 1. Both the map engine and the compiled graph (dense value iteration, the
+	 * retrograde solver) should turn them down.
+	 */
+	@Test
+	public void testInvalidOpponentModel() {
+		OpponentModel occupied=new OpponentModel() {
+			public double[] replies(Game g) {
+				double[] replies=new double[9];
+				Arrays.fill(replies, 1.0/9);
+				return replies;
+			}
+			
+			public boolean isSymmetric() {
+				return true;
+			}
+		};
+		OpponentModel notOne=new OpponentModel() {
+			public double[] replies(Game g) {
+				double[] replies=new double[9];
+				char[][] board=g.getBoard();
+				for (int cell=0; cell<9; cell++)
+					if (board[cell/3][cell%3]==' ')
+						replies[cell]=0.5;
+				return replies;
+			}
+			
+			public boolean isSymmetric() {
+				return true;
+			}
+		};
+		
+		for (OpponentModel model: new OpponentModel[] {occupied, notOne})
+		{
+			try {
+				new ValueIterationAgent(new Options().opponent(model));
+				fail("the map engine accepted an invalid model");
+			}
+			catch (IllegalArgumentException e) {
+			}
+			try {
+				new ValueIterationAgent(new Options().engine(Engine.DENSE).opponent(model));
+				fail("the dense engine accepted an invalid model");
+			}
+			catch (IllegalArgumentException e) {
+			}
+			try {
+				new RetrogradeAgent(0.9, model);
+				fail("the retrograde solver accepted an invalid model");
+			}
+			catch (IllegalArgumentException e) {
+			}
+		}
+	}
 
 }
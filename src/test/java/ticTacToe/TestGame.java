@@ -0,0 +1,179 @@
+package ticTacToe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks the bitboard game core against the char[][] logic it replaced. In the package, as it looks at the bitboards 
+ * and codes directly.
+ */
+public class TestGame {
+
+	/**
+	 * the outcome of a board as the char[][] version of {@link Game#evaluateGameState()} worked it out: the rows, then 
+	 * the columns, then the two diagonals, the first complete line deciding who won
+	 */
+	static int originalOutcome(char[][] b) {
+		int[][][] lines={
+				{{0,0},{0,1},{0,2}}, {{1,0},{1,1},{1,2}}, {{2,0},{2,1},{2,2}},
+				{{0,0},{1,0},{2,0}}, {{0,1},{1,1},{2,1}}, {{0,2},{1,2},{2,2}},
+				{{0,0},{1,1},{2,2}}, {{2,0},{1,1},{0,2}}};
+		for (int[][] l: lines)
+		{
+			char c=b[l[0][0]][l[0][1]];
+			if (c!=' ' && c==b[l[1][0]][l[1][1]] && c==b[l[2][0]][l[2][1]])
+				return (c=='X')?Game.X_WON:Game.O_WON;
+		}
+		
+		for (int i=0; i<3; i++)
+			for (int j=0; j<3; j++)
+				if (b[i][j]==' ')
+					return Game.ONGOING;
+		return Game.DRAW;
+	}
+
+	/**
+	 * Every filling of the board, valid or not (so including boards with lines for both sides), has bitboards matching 
+	 * its cells, gets the outcome the original line order gives it, and the empty cells as its moves if it isn't over
+	 */
+	@Test
+	public void testLines() {
+		for (int code=0; code<StateCatalogue.HASHES/3; code++)
+		{
+			Game g=Game.inverseHash(code*3+1);
+			char[][] b=g.getBoard();
+			int outcome=originalOutcome(b);
+			assertEquals(g.toString(), outcome, g.evaluateGameState());
+			
+			List<Move> moves=new ArrayList<Move>();
+			long xBits=0, oBits=0;
+			for (int i=0; i<3; i++)
+				for (int j=0; j<3; j++)
+				{
+					if (b[i][j]=='X')
+						xBits|=1L<<(i*3+j);
+					else if (b[i][j]=='O')
+						oBits|=1L<<(i*3+j);
+					else if (outcome==Game.ONGOING)
+						moves.add(Move.of('X', i, j));
+				}
+			assertEquals(g.toString(), xBits, g.xBits);
+			assertEquals(g.toString(), oBits, g.oBits);
+			assertEquals(g.toString(), moves, g.getPossibleMoves());
+		}
+	}
+
+	/**
+	 * the hash code as the string building version of {@link Game#hashCode()} worked it out: the cells, then whose 
+	 * turn it is, as base 3 digits
+	 */
+	static int originalHash(Game g) {
+		String s="";
+		for (char[] row: g.getBoard())
+			for (char c: row)
+				s+=(c=='X')?"1":(c=='O')?"2":"0";
+		s+=(g.whoseTurn==g.x)?"1":"2";
+		return Integer.parseInt(s, 3);
+	}
+
+	/**
+	 * inverseHash and hashCode undo each other, with the original numbering, for every possible code
+	 */
+	@Test
+	public void testInverseHash() {
+		for (int hash=0; hash<StateCatalogue.HASHES; hash++)
+		{
+			Game g=Game.inverseHash(hash);
+			if (hash%3==0)
+			{
+				assertNull(g);
+				continue;
+			}
+			assertEquals(hash, g.hashCode());
+			assertEquals(hash, originalHash(g));
+		}
+	}
+
+	/**
+	 * The codes kept up to date by moves agree with the original numbering, in every game reachable from either side 
+	 * starting, and give back the same game
+	 */
+	@Test
+	public void testReachableHashes() {
+		Set<Integer> seen=new HashSet<Integer>();
+		Deque<Game> toVisit=new ArrayDeque<Game>();
+		toVisit.add(new Game());
+		toVisit.add(new Game('O'));
+		while (!toVisit.isEmpty())
+		{
+			Game g=toVisit.pop();
+			if (!seen.add(g.hashCode()))
+				continue;
+			
+			assertEquals(g.toString(), originalHash(g), g.hashCode());
+			Game back=Game.inverseHash(g.hashCode());
+			assertEquals(g, back);
+			assertTrue(Arrays.deepEquals(g.getBoard(), back.getBoard()));
+			assertEquals(g.whoseTurn.getName(), back.whoseTurn.getName());
+			
+			if (!g.isTerminal())
+				toVisit.addAll(g.getAllSuccessorGames());
+		}
+		// the 5478 positions of the usual game, from each side starting
+		assertEquals(2*5478, seen.size());
+	}
+
+	/**
+	 * @return everything a move changes: the bitboards, whose turn it is, the state, the codes and the board
+	 */
+	static List<Object> snapshot(Game g) {
+		return Arrays.<Object>asList(g.xBits, g.oBits, g.whoseTurn, g.state, g.boardCode, g.zobrist, g.hashCode(),
+				g.longHashCode(), Arrays.deepToString(g.getBoard()));
+	}
+
+	/**
+	 * Plays every move in every game down to {@code depth} more moves, checking that makeMove gives the game
+	 * simulateMove does, and that unmakeMove puts everything back exactly
+	 * 
+	 * @return the number of moves made
+	 */
+	static int walk(Game g, int depth) throws IllegalMoveException {
+		if (depth==0 || g.isTerminal())
+			return 0;
+		
+		int moves=0;
+		List<Object> before=snapshot(g);
+		for (Move m: new ArrayList<Move>(g.getPossibleMoves()))
+		{
+			Game simulated=g.simulateMove(m);
+			g.makeMove(m);
+			assertEquals(snapshot(simulated), snapshot(g));
+			moves+=1+walk(g, depth-1);
+			g.unmakeMove();
+			assertEquals(before, snapshot(g));
+		}
+		return moves;
+	}
+
+	@Test
+	public void testMakeUnmake() throws IllegalMoveException {
+		// the whole game tree, from each side starting
+		assertEquals(549945, walk(new Game(), 9));
+		assertEquals(549945, walk(new Game('O'), 9));
+		
+		// and the first moves on a bigger board, where the zobrist hash is used
+		assertEquals(16+16*15+16*15*14+16*15*14*13, walk(new Game(4, 4, 4), 4));
+	}
+
+}